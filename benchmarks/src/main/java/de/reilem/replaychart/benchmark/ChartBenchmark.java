@@ -0,0 +1,52 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.ReplayChart;
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxInputExtractor;
+import org.knowm.xchart.XYChart;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the XChart charts for parsed replays, without displaying them
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class ChartBenchmark
+{
+    @Param( { "1", "20" } )
+    public int replayCount;
+
+    @Param( { "false", "true" } )
+    public boolean overlay;
+
+    private List<ReplayData> replays;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        replays = new ArrayList<>();
+        for ( int i = 0; i < replayCount; i++ )
+        {
+            E_TmVersion version = E_TmVersion.values()[i % E_TmVersion.values().length];
+            ReplayData replay = GbxInputExtractor.parseReplayData( Fixtures.path( SyntheticReplays.fixtureName( version ) ), false );
+            replay.setFileName( replay.getChartTitle() + " " + i ); //series names have to be unique
+            replays.add( replay );
+        }
+    }
+
+    @Benchmark
+    public List<XYChart> buildCharts()
+    {
+        return new ReplayChart().buildCharts( replays, overlay, true, false );
+    }
+}
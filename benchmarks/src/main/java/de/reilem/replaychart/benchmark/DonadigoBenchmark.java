@@ -0,0 +1,37 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.donadigo.DonadigoReplayBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a replay from a TMInterface input script
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DonadigoBenchmark
+{
+    @Param( { "pad", "keyboard" } )
+    public String script;
+
+    private String file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = Fixtures.path( script + ".txt" );
+    }
+
+    @Benchmark
+    public ReplayData buildReplay() throws IOException
+    {
+        return DonadigoReplayBuilder.buildReplay( file, false );
+    }
+}
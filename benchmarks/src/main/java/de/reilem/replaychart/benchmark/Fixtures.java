@@ -0,0 +1,42 @@
+package de.reilem.replaychart.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Copies the committed fixtures out of the benchmark jar, the parsers need real files
+ */
+final class Fixtures
+{
+    private static Path folder;
+
+    private Fixtures()
+    {
+    }
+
+    static synchronized String path( String name ) throws IOException
+    {
+        if ( folder == null )
+        {
+            folder = Files.createTempDirectory( "replaychart-fixtures" );
+            folder.toFile().deleteOnExit();
+        }
+        Path file = folder.resolve( name );
+        if ( !Files.exists( file ) )
+        {
+            try ( InputStream in = Fixtures.class.getResourceAsStream( "/fixtures/" + name ) )
+            {
+                if ( in == null )
+                {
+                    throw new IOException( "Missing fixture: " + name );
+                }
+                Files.copy( in, file, StandardCopyOption.REPLACE_EXISTING );
+            }
+            file.toFile().deleteOnExit();
+        }
+        return file.toString();
+    }
+}
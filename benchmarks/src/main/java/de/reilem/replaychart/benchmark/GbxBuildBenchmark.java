@@ -0,0 +1,47 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxEventStore;
+import de.reilem.replaychart.gbx.GbxReplayBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning parsed inputs into the 10ms timeline
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class GbxBuildBenchmark
+{
+    /**
+     * run length in ms
+     */
+    @Param( { "60000", "300000" } )
+    public int replayTime;
+
+    @Param( { "500", "20000" } )
+    public int eventCount;
+
+    @Param( { "true", "false" } )
+    public boolean pad;
+
+    private GbxEventStore inputs;
+
+    @Setup
+    public void setup()
+    {
+        inputs = SyntheticReplays.inputs( replayTime, eventCount, pad );
+    }
+
+    @Benchmark
+    public ReplayData build()
+    {
+        return GbxReplayBuilder.build( replayTime, inputs, false, E_TmVersion.FOREVER );
+    }
+}
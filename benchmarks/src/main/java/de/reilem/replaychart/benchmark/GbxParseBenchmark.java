@@ -0,0 +1,38 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxInputExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading, decompressing and parsing one replay file
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class GbxParseBenchmark
+{
+    @Param( { "ESWC", "FOREVER", "TM2" } )
+    public E_TmVersion version;
+
+    private String file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = Fixtures.path( SyntheticReplays.fixtureName( version ) );
+    }
+
+    @Benchmark
+    public ReplayData parseReplayData() throws IOException
+    {
+        return GbxInputExtractor.parseReplayData( file, false );
+    }
+}
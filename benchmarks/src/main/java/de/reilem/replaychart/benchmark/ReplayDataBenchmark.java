@@ -0,0 +1,60 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.E_ChannelStorage;
+import de.reilem.replaychart.ReplayData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handing the channels out as arrays, as done for every chart series
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ReplayDataBenchmark
+{
+    @Param( { "SAMPLES", "EVENTS" } )
+    public E_ChannelStorage storage;
+
+    /**
+     * run length in ms
+     */
+    @Param( { "60000", "600000" } )
+    public int replayTime;
+
+    private ReplayData replay;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random( 42 );
+        replay = new ReplayData( storage );
+        replay.setReplayTime( replayTime );
+        double steering = 0.0;
+        for ( int time = 0; time < replayTime; time += 10 )
+        {
+            if ( random.nextInt( 30 ) == 0 ) //keyboard like steering, changes a few times per second
+            {
+                steering = (random.nextInt( 3 ) - 1) * 65536.0;
+            }
+            replay.addSteering( steering );
+            replay.addAcceleration( (time / 2000) % 4 == 0 ? 0.0 : 65536.0 );
+            replay.addBrake( (time / 2000) % 7 == 0 ? -65536.0 : 0.0 );
+        }
+    }
+
+    @Benchmark
+    public void toArrays( Blackhole blackhole )
+    {
+        blackhole.consume( replay.getTimestamps() );
+        blackhole.consume( replay.getSteering() );
+        blackhole.consume( replay.getAcceleration() );
+        blackhole.consume( replay.getBrake() );
+    }
+}
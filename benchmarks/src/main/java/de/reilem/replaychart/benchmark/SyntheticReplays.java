@@ -0,0 +1,294 @@
+package de.reilem.replaychart.benchmark;
+
+import de.reilem.replaychart.gbx.E_GbxInputType;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxEventStore;
+import de.reilem.replaychart.gbx.GbxInputExtractor;
+import org.anarres.lzo.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates reproducible replays for the benchmarks. The committed fixtures were written by {@link #main(String[])}.
+ */
+public final class SyntheticReplays
+{
+    public static final int FIXTURE_REPLAY_TIME = 60000;
+
+    private static final String[] CONTROL_NAMES = { "_FakeIsRaceRunning", "_FakeFinishLine", "Accelerate", "Brake", "SteerLeft",
+            "SteerRight", "Steer", "Respawn" };
+
+    /**
+     * index of every type in {@link #CONTROL_NAMES}, the input block refers to the control names by index
+     */
+    private static final Map<E_GbxInputType, Integer> CONTROL_INDEX = new EnumMap<>( E_GbxInputType.class );
+
+    static
+    {
+        for ( int i = 0; i < CONTROL_NAMES.length; i++ )
+        {
+            CONTROL_INDEX.put( E_GbxInputType.getType( CONTROL_NAMES[i] ), i );
+        }
+    }
+
+    private SyntheticReplays()
+    {
+    }
+
+    /**
+     * writes the fixtures to the given folder
+     *
+     * @param args target folder
+     * @throws IOException
+     */
+    public static void main( String[] args ) throws IOException
+    {
+        Path folder = Paths.get( args.length > 0 ? args[0] : "src/main/resources/fixtures" );
+        Files.createDirectories( folder );
+        for ( E_TmVersion version : E_TmVersion.values() )
+        {
+            Path fixture = folder.resolve( fixtureName( version ) );
+            Files.write( fixture, gbxReplay( version, FIXTURE_REPLAY_TIME, 1500, true ) );
+            verify( fixture, inputs( FIXTURE_REPLAY_TIME, 1500, true ) );
+        }
+        writeDonadigoScript( folder.resolve( "pad.txt" ), FIXTURE_REPLAY_TIME, true );
+        writeDonadigoScript( folder.resolve( "keyboard.txt" ), FIXTURE_REPLAY_TIME, false );
+    }
+
+    /**
+     * parses the written replay and compares its events with the generated ones
+     *
+     * @param fixture
+     * @param expected
+     * @throws IOException if the parser doesn't read back the generated events
+     */
+    private static void verify( Path fixture, GbxEventStore expected ) throws IOException
+    {
+        GbxEventStore parsed = new GbxEventStore( expected.size() );
+        GbxInputExtractor.readInputs( fixture.toString(), parsed );
+        if ( parsed.size() != expected.size() )
+        {
+            throw new IOException( fixture + ": parsed " + parsed.size() + " events instead of " + expected.size() );
+        }
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            if ( parsed.getTime( i ) != expected.getTime( i ) || parsed.getType( i ) != expected.getType( i )
+                    || parsed.getValue( i ) != expected.getValue( i ) )
+            {
+                throw new IOException( fixture + ": event " + i + " is parsed as " + parsed.getType( i ) + " " + parsed.getValue( i ) + " at "
+                        + parsed.getTime( i ) + " instead of " + expected.getType( i ) + " " + expected.getValue( i ) + " at " + expected.getTime( i ) );
+            }
+        }
+    }
+
+    public static String fixtureName( E_TmVersion version )
+    {
+        return version.name().toLowerCase() + ".Replay.Gbx";
+    }
+
+    /**
+     * creates inputs as they are handed to the replay builder, sorted by time
+     *
+     * @param replayTime
+     * @param eventCount approximate amount of steering events
+     * @param pad        analog steering instead of keys
+     * @return
+     */
+    public static GbxEventStore inputs( int replayTime, int eventCount, boolean pad )
+    {
+        Random random = new Random( 42 );
+        GbxEventStore inputs = new GbxEventStore();
+        inputs.add( 0, E_GbxInputType.START, 1 );
+        inputs.add( replayTime, E_GbxInputType.FINISH, 1 );
+
+        int ticks = replayTime / 10;
+        int gap = Math.max( 1, ticks / Math.max( 1, eventCount ) );
+        E_GbxInputType key = E_GbxInputType.STEER_LEFT;
+        for ( int tick = 0; tick < ticks; tick += gap )
+        {
+            int time = tick * 10;
+            if ( pad )
+            {
+                inputs.add( time, E_GbxInputType.STEER, random.nextInt( 131072 ) - 65536 );
+            }
+            else if ( (tick / gap) % 2 == 0 ) //press a random key, release it with the next event
+            {
+                key = random.nextBoolean() ? E_GbxInputType.STEER_LEFT : E_GbxInputType.STEER_RIGHT;
+                inputs.add( time, key, 1 );
+            }
+            else
+            {
+                inputs.add( time, key, 0 );
+            }
+        }
+        for ( int time = 0; time < replayTime; time += 2000 + random.nextInt( 100 ) * 10 )
+        {
+            inputs.add( time, E_GbxInputType.ACCELERATE, 1 );
+            inputs.add( time + 1500, E_GbxInputType.ACCELERATE, 0 );
+            inputs.add( time + 1600, E_GbxInputType.BRAKE, 1 );
+            inputs.add( time + 1800, E_GbxInputType.BRAKE, 0 );
+        }
+        inputs.add( replayTime / 2, E_GbxInputType.RESPAWN, 1 );
+        inputs.add( replayTime / 2 + 10, E_GbxInputType.RESPAWN, 0 );
+
+        inputs.sort();
+        return inputs;
+    }
+
+    /**
+     * creates a minimal replay file with header chunks and a lzo compressed body containing the input block
+     *
+     * @param version
+     * @param replayTime
+     * @param eventCount
+     * @param pad
+     * @return file content
+     * @throws IOException
+     */
+    public static byte[] gbxReplay( E_TmVersion version, int replayTime, int eventCount, boolean pad ) throws IOException
+    {
+        ByteArrayOutputStream inputBlock = new ByteArrayOutputStream();
+        writeInt( inputBlock, replayTime );
+        writeInt( inputBlock, 10 );
+        writeInt( inputBlock, CONTROL_NAMES.length );
+        writeInt( inputBlock, 3 );
+        for ( int i = 0; i < CONTROL_NAMES.length; i++ )
+        {
+            writeString( inputBlock, CONTROL_NAMES[i] );
+            if ( i < CONTROL_NAMES.length - 1 )
+            {
+                writeInt( inputBlock, 0x40000000 );
+            }
+        }
+
+        GbxEventStore inputs = inputs( replayTime, eventCount, pad );
+        writeInt( inputBlock, inputs.size() );
+        writeInt( inputBlock, 0 );
+        GbxEventStore.Cursor input = inputs.cursor();
+        while ( input.hasNext() )
+        {
+            input.next();
+            boolean release = input.getValue() != 1 && input.getType() != E_GbxInputType.STEER
+                    && input.getType() != E_GbxInputType.START && input.getType() != E_GbxInputType.FINISH;
+            writeInt( inputBlock, input.getTime() + 100010 - (release ? 10 : 0) ); //the parser delays releases by 10ms
+            inputBlock.write( CONTROL_INDEX.get( input.getType() ) );
+            if ( input.getType() == E_GbxInputType.STEER )
+            {
+                int value = -input.getValue();
+                inputBlock.write( value );
+                inputBlock.write( value >> 8 );
+                inputBlock.write( value >> 16 );
+                inputBlock.write( 0 );
+            }
+            else
+            {
+                writeInt( inputBlock, input.getValue() );
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ( version == E_TmVersion.TM2 ) //embedded map
+        {
+            writeInt( body, 0x03093002 );
+            writeInt( body, 512 );
+            body.write( "GBX".getBytes( StandardCharsets.US_ASCII ) );
+            body.write( new byte[509] );
+        }
+        writeInt( body, version == E_TmVersion.ESWC ? 0x2403F00D : version == E_TmVersion.FOREVER ? 0x03092019 : 0x03092025 );
+        if ( version == E_TmVersion.TM2 )
+        {
+            body.write( new byte[12] );
+        }
+        inputBlock.writeTo( body );
+        writeInt( body, 0xFACADE01 );
+
+        byte[] uncompressed = body.toByteArray();
+        byte[] compressed = new byte[uncompressed.length + uncompressed.length / 16 + 64 + 3];
+        lzo_uintp compressedLength = new lzo_uintp();
+        LzoLibrary.getInstance().newCompressor( LzoAlgorithm.LZO1X, null )
+                .compress( uncompressed, 0, uncompressed.length, compressed, 0, compressedLength );
+
+        String exever = version == E_TmVersion.ESWC ? "0.1.5.4" : version == E_TmVersion.FOREVER ? "2.11.26" : "3.3.0";
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        writeString( xml, "<header type=\"replay\" exever=\"" + exever + "\"><map uid=\"synthetic\" name=\"Synthetic\" author=\"bench\"/>"
+                + "<times best=\"" + replayTime + "\" respawns=\"1\" stuntscore=\"0\" validable=\"1\"/></header>" );
+        byte[] xmlChunk = xml.toByteArray();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write( "GBX".getBytes( StandardCharsets.US_ASCII ) );
+        file.write( 6 );
+        file.write( 0 );
+        file.write( "BUCR".getBytes( StandardCharsets.US_ASCII ) );
+        writeInt( file, 0x03093000 );
+        writeInt( file, 4 + 8 + xmlChunk.length );
+        writeInt( file, 1 );
+        writeInt( file, 0x03093001 );
+        writeInt( file, xmlChunk.length | 0x80000000 );
+        file.write( xmlChunk );
+        writeInt( file, 2 ); //nodes
+        writeInt( file, 0 ); //external nodes
+        writeInt( file, uncompressed.length );
+        writeInt( file, compressedLength.value );
+        file.write( compressed, 0, compressedLength.value );
+        return file.toByteArray();
+    }
+
+    /**
+     * writes a TMInterface input script
+     *
+     * @param file
+     * @param replayTime
+     * @param pad
+     * @throws IOException
+     */
+    public static void writeDonadigoScript( Path file, int replayTime, boolean pad ) throws IOException
+    {
+        Random random = new Random( 42 );
+        try ( PrintWriter out = new PrintWriter( Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) ) )
+        {
+            for ( int time = 0; time + 1800 < replayTime; time += 2000 )
+            {
+                out.println( time + "-" + (time + 1500) + " press up" );
+                out.println( (time + 1600) + "-" + (time + 1800) + " press down" );
+            }
+            if ( pad )
+            {
+                for ( int time = 0; time < replayTime; time += 10 + random.nextInt( 5 ) * 10 )
+                {
+                    out.println( time + " steer " + (random.nextInt( 131072 ) - 65536) );
+                }
+            }
+            else
+            {
+                for ( int time = 0; time + 300 < replayTime; time += 400 )
+                {
+                    out.println( time + "-" + (time + 100 + random.nextInt( 20 ) * 10) + " press " + (random.nextBoolean() ? "left" : "right") );
+                }
+            }
+        }
+    }
+
+    private static void writeInt( ByteArrayOutputStream out, int value )
+    {
+        out.write( value );
+        out.write( value >>> 8 );
+        out.write( value >>> 16 );
+        out.write( value >>> 24 );
+    }
+
+    private static void writeString( ByteArrayOutputStream out, String value ) throws IOException
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        writeInt( out, bytes.length );
+        out.write( bytes );
+    }
+}
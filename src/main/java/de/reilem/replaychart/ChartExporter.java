@@ -0,0 +1,82 @@
+package de.reilem.replaychart;
+
+import de.erichseifert.vectorgraphics2d.VectorGraphics2D;
+import de.erichseifert.vectorgraphics2d.svg.SVGProcessor;
+import de.erichseifert.vectorgraphics2d.util.PageSize;
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
+import org.knowm.xchart.XYChart;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes charts to image files, without showing a window. Charts can be written from several threads at once.
+ */
+public final class ChartExporter
+{
+    private final File           folder;
+    private final E_ExportFormat format;
+
+    public ChartExporter( File folder, E_ExportFormat format )
+    {
+        this.folder = folder;
+        this.format = format;
+    }
+
+    /**
+     * @return false if the export folder does not exist and can not be created
+     */
+    public boolean createFolder()
+    {
+        return folder.isDirectory() || folder.mkdirs();
+    }
+
+    /**
+     * paints the chart into a clipped graphics and encodes it.
+     * The encoders of XChart paint without clip, annotation lines need the clip bounds to find their position
+     *
+     * @param chart
+     * @param name file name without extension
+     * @throws IOException
+     */
+    public void write( XYChart chart, String name ) throws IOException
+    {
+        Profiler.start( E_Stage.EXPORT );
+        int width = chart.getWidth();
+        int height = chart.getHeight();
+        File file = new File( folder, name + (format == E_ExportFormat.SVG ? ".svg" : ".png") );
+        if ( format == E_ExportFormat.SVG )
+        {
+            VectorGraphics2D graphics = new VectorGraphics2D();
+            graphics.setClip( 0, 0, width, height );
+            chart.paint( graphics, width, height );
+            try ( OutputStream out = new BufferedOutputStream( new FileOutputStream( file ) ) )
+            {
+                new SVGProcessor().getDocument( graphics.getCommands(), new PageSize( 0.0, 0.0, width, height ) ).writeTo( out );
+            }
+        }
+        else
+        {
+            BufferedImage image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+            Graphics2D graphics = image.createGraphics();
+            try
+            {
+                graphics.setClip( 0, 0, width, height );
+                chart.paint( graphics, width, height );
+            }
+            finally
+            {
+                graphics.dispose();
+            }
+            ImageIO.write( image, "png", file );
+        }
+        Profiler.stop( E_Stage.EXPORT, file.length() );
+    }
+}
@@ -0,0 +1,184 @@
+package de.reilem.replaychart;
+
+import org.knowm.xchart.XChartPanel;
+import org.knowm.xchart.XYChart;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Scrollable list of equally high charts.
+ * Only the charts in or near the visible area are built and added as panels, panels that are scrolled away are released.
+ */
+public final class ChartList extends JPanel implements Scrollable
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int PRELOADED_ROWS = 2; //rows built above and below the visible area
+
+    /**
+     * builds the charts of the list on demand
+     */
+    public interface ChartSource
+    {
+        XYChart build( int index );
+
+        /**
+         * the width of the list changed, called for every chart that is currently shown
+         */
+        default void resized( XYChart chart, int width )
+        {
+        }
+
+        /**
+         * the chart was scrolled out of the list and won't be shown again
+         */
+        default void released( XYChart chart )
+        {
+        }
+    }
+
+    private final int                                rowHeight;
+    private final ChartSource                        source;
+    private final Map<Integer, XChartPanel<XYChart>> panels = new HashMap<>();
+
+    private int count;
+    private int lastWidth = -1;
+
+    public ChartList( int count, int rowHeight, ChartSource source )
+    {
+        super( null );
+        this.count = count;
+        this.rowHeight = rowHeight;
+        this.source = source;
+    }
+
+    /**
+     * @param visibleRows amount of rows visible without scrolling
+     * @return the list in a scroll pane
+     */
+    public JScrollPane createScrollPane( int visibleRows )
+    {
+        JScrollPane scrollPane = new JScrollPane( this, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER );
+        scrollPane.getViewport().setPreferredSize( new Dimension( 1440, rowHeight * visibleRows ) );
+        scrollPane.getViewport().addChangeListener( e -> updateRows() );
+        scrollPane.setBorder( BorderFactory.createEmptyBorder() );
+        return scrollPane;
+    }
+
+    /**
+     * changes the amount of charts and rebuilds all shown charts, e.g. when more replays were loaded
+     *
+     * @param count
+     */
+    public void reset( int count )
+    {
+        this.count = count;
+        panels.values().forEach( panel ->
+        {
+            remove( panel );
+            source.released( panel.getChart() );
+        } );
+        panels.clear();
+        revalidate();
+        updateRows();
+    }
+
+    @Override
+    public void doLayout()
+    {
+        updateRows();
+    }
+
+    /**
+     * adds the panels of the rows in or near the visible area and releases all others
+     */
+    private void updateRows()
+    {
+        int width = getWidth();
+        Rectangle visible = getVisibleRect();
+        if ( width <= 0 || visible.height <= 0 )
+        {
+            return;
+        }
+        int first = Math.max( 0, visible.y / rowHeight - PRELOADED_ROWS );
+        int last = Math.min( count - 1, (visible.y + visible.height) / rowHeight + PRELOADED_ROWS );
+
+        boolean changed = false;
+        Iterator<Map.Entry<Integer, XChartPanel<XYChart>>> iterator = panels.entrySet().iterator();
+        while ( iterator.hasNext() )
+        {
+            Map.Entry<Integer, XChartPanel<XYChart>> entry = iterator.next();
+            if ( entry.getKey() < first || entry.getKey() > last )
+            {
+                remove( entry.getValue() );
+                source.released( entry.getValue().getChart() );
+                iterator.remove();
+                changed = true;
+            }
+        }
+
+        boolean resized = width != lastWidth;
+        lastWidth = width;
+        for ( int i = first; i <= last; i++ )
+        {
+            XChartPanel<XYChart> panel = panels.get( i );
+            if ( panel == null )
+            {
+                panel = new XChartPanel<>( source.build( i ) );
+                panels.put( i, panel );
+                add( panel );
+                changed = true;
+            }
+            else if ( resized )
+            {
+                source.resized( panel.getChart(), width );
+            }
+            panel.setBounds( 0, i * rowHeight, width, rowHeight );
+        }
+
+        if ( changed )
+        {
+            repaint();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize()
+    {
+        return new Dimension( 1440, rowHeight * count );
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize()
+    {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement( Rectangle visibleRect, int orientation, int direction )
+    {
+        return rowHeight / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement( Rectangle visibleRect, int orientation, int direction )
+    {
+        return Math.max( rowHeight, (visibleRect.height / rowHeight) * rowHeight );
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight()
+    {
+        return false;
+    }
+}
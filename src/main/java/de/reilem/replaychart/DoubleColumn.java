@@ -0,0 +1,65 @@
+package de.reilem.replaychart;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of primitive doubles holding one channel (one value per 10ms) of a replay
+ */
+public final class DoubleColumn implements ReplayChannel
+{
+    private static final double[] EMPTY = new double[0];
+
+    private double[] values = EMPTY;
+    private int      size   = 0;
+
+    @Override public void add( double d )
+    {
+        if ( size == values.length )
+        {
+            values = Arrays.copyOf( values, Math.max( 64, size + (size >> 1) ) );
+        }
+        values[size++] = d;
+    }
+
+    @Override public double get( int index )
+    {
+        if ( index >= size )
+        {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+        }
+        return values[index];
+    }
+
+    @Override public int size()
+    {
+        return size;
+    }
+
+    @Override public int countNonZero()
+    {
+        int count = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( values[i] != 0.0 )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * returns the values as array, the backing array is trimmed once and handed out directly afterwards.
+     * The returned array is shared and must not be modified.
+     *
+     * @return
+     */
+    @Override public double[] toArray()
+    {
+        if ( values.length != size )
+        {
+            values = Arrays.copyOf( values, size );
+        }
+        return values;
+    }
+}
@@ -0,0 +1,29 @@
+package de.reilem.replaychart;
+
+public enum E_ChannelStorage
+{
+    /**
+     * one value per 10ms, see {@link DoubleColumn}
+     */
+    SAMPLES,
+    /**
+     * only the points where the value changes, see {@link StepColumn}
+     */
+    EVENTS;
+
+    /**
+     * pad steering changes on almost every sample, keyboard steering only when a key is pressed or released
+     *
+     * @param padSteering
+     * @return storage for the steering channel
+     */
+    public static E_ChannelStorage forSteering( boolean padSteering )
+    {
+        return padSteering ? SAMPLES : EVENTS;
+    }
+
+    public ReplayChannel newChannel()
+    {
+        return this == SAMPLES ? new DoubleColumn() : new StepColumn();
+    }
+}
@@ -0,0 +1,6 @@
+package de.reilem.replaychart;
+
+public enum E_InputChannel
+{
+    STEERING, ACCELERATION, BRAKE;
+}
@@ -1,5 +1,12 @@
 package de.reilem.replaychart;
 
+import de.reilem.replaychart.archive.ArchiveCommand;
+import de.reilem.replaychart.cache.ReplayCache;
+import de.reilem.replaychart.diff.DiffCommand;
+import de.reilem.replaychart.library.LibraryCommand;
+import de.reilem.replaychart.profile.Profiler;
+import de.reilem.replaychart.stats.StatsCommand;
+
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -24,6 +31,17 @@ public class MainWindow extends javax.swing.JFrame
             boolean overlaySteering = false;
             boolean invertSteering = false;
             boolean matchTimeline = false;
+            boolean listOnly = false;
+            boolean watchFolder = false;
+            boolean diffOnly = false;
+            boolean updateLibrary = false;
+            String libraryQuery = null;
+            int workerCount = Runtime.getRuntime().availableProcessors();
+            int topK = 0;
+            File exportFolder = null;
+            File statisticsFile = null;
+            File archiveFile = null;
+            E_ExportFormat exportFormat = E_ExportFormat.PNG;
 
             if ( arguments.contains( "-o" ) ) //check for overlay mode
             {
@@ -35,13 +53,159 @@ public class MainWindow extends javax.swing.JFrame
                 invertSteering = true;
                 arguments.remove( "-i" );
             }
-            if ( arguments.contains( "-m" ) ) //check for inverted steering mode
+            if ( arguments.contains( "-m" ) ) //check for match timeline mode
             {
                 matchTimeline = true;
                 arguments.remove( "-m" );
             }
+            if ( arguments.contains( "--profile" ) ) //check for profiling
+            {
+                Profiler.enable();
+                arguments.remove( "--profile" );
+            }
+            if ( arguments.contains( "-c" ) ) //check for parse cache
+            {
+                ReplayCache.setDefault( ReplayCache.inUserHome() );
+                arguments.remove( "-c" );
+            }
+            if ( arguments.contains( "-l" ) ) //check for list mode
+            {
+                listOnly = true;
+                arguments.remove( "-l" );
+            }
+            if ( arguments.contains( "-w" ) ) //check for watch mode
+            {
+                watchFolder = true;
+                arguments.remove( "-w" );
+            }
+            if ( arguments.contains( "-d" ) ) //check for diff mode
+            {
+                diffOnly = true;
+                arguments.remove( "-d" );
+            }
+            if ( arguments.contains( "-u" ) ) //check for library update
+            {
+                updateLibrary = true;
+                arguments.remove( "-u" );
+            }
+            int topKIndex = arguments.indexOf( "-k" );
+            if ( topKIndex != -1 && topKIndex + 1 < arguments.size() ) //check for fastest k replays mode
+            {
+                topK = parseCount( arguments.get( topKIndex + 1 ), 0 );
+                if ( topK < 0 )
+                {
+                    System.out.println( "Invalid replay count " + arguments.get( topKIndex + 1 ) + " for -k, expected a number of at least 0 (0 charts all)" );
+                    return;
+                }
+                arguments.remove( topKIndex + 1 );
+                arguments.remove( topKIndex );
+            }
+            int threadsIndex = arguments.indexOf( "-t" );
+            if ( threadsIndex != -1 && threadsIndex + 1 < arguments.size() ) //check for parser thread count
+            {
+                workerCount = parseCount( arguments.get( threadsIndex + 1 ), 1 );
+                if ( workerCount < 0 )
+                {
+                    System.out.println( "Invalid thread count " + arguments.get( threadsIndex + 1 ) + " for -t, expected a number of at least 1" );
+                    return;
+                }
+                arguments.remove( threadsIndex + 1 );
+                arguments.remove( threadsIndex );
+            }
+
+            int exportIndex = arguments.indexOf( "-e" );
+            if ( exportIndex != -1 && exportIndex + 1 < arguments.size() ) //check for image export mode
+            {
+                exportFolder = new File( arguments.get( exportIndex + 1 ) );
+                arguments.remove( exportIndex + 1 );
+                arguments.remove( exportIndex );
+            }
+            int formatIndex = arguments.indexOf( "-f" );
+            if ( formatIndex != -1 && formatIndex + 1 < arguments.size() ) //check for image format
+            {
+                try
+                {
+                    exportFormat = E_ExportFormat.valueOf( arguments.get( formatIndex + 1 ).toUpperCase() );
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    System.out.println( "Unknown export format " + arguments.get( formatIndex + 1 ) + ", allowed: "
+                            + Arrays.toString( E_ExportFormat.values() ).toLowerCase() );
+                    return;
+                }
+                arguments.remove( formatIndex + 1 );
+                arguments.remove( formatIndex );
+            }
+            int statisticsIndex = arguments.indexOf( "-s" );
+            if ( statisticsIndex != -1 && statisticsIndex + 1 < arguments.size() ) //check for statistics mode
+            {
+                statisticsFile = new File( arguments.get( statisticsIndex + 1 ) );
+                arguments.remove( statisticsIndex + 1 );
+                arguments.remove( statisticsIndex );
+            }
+            int archiveIndex = arguments.indexOf( "-a" );
+            if ( archiveIndex != -1 && archiveIndex + 1 < arguments.size() ) //check for archive mode
+            {
+                archiveFile = new File( arguments.get( archiveIndex + 1 ) );
+                arguments.remove( archiveIndex + 1 );
+                arguments.remove( archiveIndex );
+            }
+            int queryIndex = arguments.indexOf( "-q" );
+            if ( queryIndex != -1 && queryIndex + 1 < arguments.size() ) //check for library query
+            {
+                libraryQuery = arguments.get( queryIndex + 1 );
+                arguments.remove( queryIndex + 1 );
+                arguments.remove( queryIndex );
+            }
 
-            new ReplayChart().init( arguments, overlaySteering, invertSteering, false, matchTimeline );
+            ReplayChart replayChart = new ReplayChart();
+            replayChart.setWorkerCount( workerCount );
+            replayChart.setTopK( topK );
+            replayChart.setWatchFolder( watchFolder );
+            if ( updateLibrary )
+            {
+                LibraryCommand.updateLibrary( arguments, workerCount );
+                return;
+            }
+            if ( libraryQuery != null ) //the matching replays replace the given files
+            {
+                arguments = LibraryCommand.queryLibrary( libraryQuery );
+                if ( arguments == null )
+                {
+                    return;
+                }
+                if ( arguments.isEmpty() )
+                {
+                    System.out.println( "No replays match the query." );
+                    return;
+                }
+            }
+            if ( listOnly )
+            {
+                LibraryCommand.listReplays( arguments, workerCount );
+                return;
+            }
+            if ( diffOnly )
+            {
+                DiffCommand.diffReplays( replayChart.loadReplays( arguments ), workerCount );
+                return;
+            }
+            if ( archiveFile != null )
+            {
+                ArchiveCommand.writeArchive( replayChart.loadReplays( arguments ), archiveFile );
+                return;
+            }
+            if ( statisticsFile != null )
+            {
+                StatsCommand.writeStatistics( arguments, statisticsFile, workerCount );
+                return;
+            }
+            if ( exportFolder != null )
+            {
+                replayChart.export( arguments, overlaySteering, invertSteering, matchTimeline, exportFolder, exportFormat );
+                return;
+            }
+            replayChart.init( arguments, overlaySteering, invertSteering, false, matchTimeline );
         }
     }
 
@@ -143,4 +307,22 @@ public class MainWindow extends javax.swing.JFrame
         int y = (int) ((dimension.getHeight() - this.getHeight()) / 2);
         this.setLocation( x, y );
     }
+
+    /**
+     * @param value
+     * @param min
+     * @return the value, -1 if it is no number or less than min
+     */
+    private static int parseCount( String value, int min )
+    {
+        try
+        {
+            int count = Integer.parseInt( value );
+            return count < min ? -1 : count;
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package de.reilem.replaychart;
+
+/**
+ * One input channel (steering, acceleration or brake) of a replay with one value per 10ms
+ */
+public interface ReplayChannel
+{
+    /**
+     * receives consecutive equal values
+     */
+    interface RunConsumer
+    {
+        void accept( double value, int length );
+    }
+
+    void add( double d );
+
+    /**
+     * adds the same value count times
+     *
+     * @param d
+     * @param count
+     */
+    default void add( double d, int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            add( d );
+        }
+    }
+
+    double get( int index );
+
+    int size();
+
+    default boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * amount of values that are not 0
+     *
+     * @return
+     */
+    int countNonZero();
+
+    /**
+     * calls the consumer for every run of equal values in order, without expanding the channel
+     *
+     * @param consumer
+     */
+    default void forEachRun( RunConsumer consumer )
+    {
+        int size = size();
+        int start = 0;
+        for ( int i = 1; i <= size; i++ )
+        {
+            if ( i == size || Double.doubleToLongBits( get( i ) ) != Double.doubleToLongBits( get( start ) ) )
+            {
+                consumer.accept( get( start ), i - start );
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * end of the run of equal values that contains the index, used to step over unchanged values
+     *
+     * @param index
+     * @return first index after the run
+     */
+    default int runEnd( int index )
+    {
+        int size = size();
+        double value = get( index );
+        int end = index + 1;
+        while ( end < size && Double.doubleToLongBits( get( end ) ) == Double.doubleToLongBits( value ) )
+        {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * one value per 10ms, the returned array must not be modified
+     *
+     * @return
+     */
+    double[] toArray();
+}
@@ -1,24 +1,37 @@
 package de.reilem.replaychart;
 
+import de.reilem.replaychart.archive.ReplayArchive;
 import de.reilem.replaychart.donadigo.DonadigoReplayBuilder;
 import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxHeaderScanner;
 import de.reilem.replaychart.gbx.GbxInputExtractor;
 import de.reilem.replaychart.gbx.GbxSteeringInput;
+import de.reilem.replaychart.gbx.ReplayMetadata;
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
 import org.knowm.xchart.*;
 import org.knowm.xchart.style.Styler;
 import org.knowm.xchart.style.markers.SeriesMarkers;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ReplayChart
 {
@@ -26,220 +39,788 @@ public final class ReplayChart
     private boolean donadigoInput   = false;
     private boolean invertSteering  = false;
     private boolean matchTimeline = false;
+    private int     workerCount   = Runtime.getRuntime().availableProcessors();
+    private int     topK          = 0;
+    private boolean watchFolder   = false;
 
-    private List<ReplayData> replays = new ArrayList<>();
+    private List<ReplayData> replays   = new ArrayList<>();
+    private SeriesDecimator  decimator = new SeriesDecimator( false );
+
+    private final Map<String, ReplayArchive> archives = new ConcurrentHashMap<>();
 
     /**
-     * read data and show charts
+     * read data and show charts, the window opens right away and the replays are read in the background
      */
     public void init( List<String> arguments, boolean overlaySteering, boolean invertSteering, boolean isUiMode, boolean matchTimeline )
     {
         this.overlaySteering = overlaySteering;
         this.invertSteering = invertSteering;
         this.matchTimeline = matchTimeline;
-        if ( donadigoInput )
+        decimator = new SeriesDecimator( true ); //series are decimated again when the window is resized
+
+        List<String> files = new ArrayList<>( arguments );
+        javax.swing.SwingUtilities.invokeLater( () -> new ChartWindow().open( files, isUiMode ) );
+    }
+
+    /**
+     * read data and write one image per chart into the given folder, no window is opened
+     *
+     * @param arguments
+     * @param overlaySteering
+     * @param invertSteering
+     * @param matchTimeline
+     * @param folder
+     * @param format
+     */
+    public void export( List<String> arguments, boolean overlaySteering, boolean invertSteering, boolean matchTimeline, File folder, E_ExportFormat format )
+    {
+        this.overlaySteering = overlaySteering;
+        this.invertSteering = invertSteering;
+        this.matchTimeline = matchTimeline;
+        ChartExporter exporter = new ChartExporter( folder, format );
+        if ( !exporter.createFolder() )
         {
-            if ( arguments.size() == 1 && new File( arguments.get( 0 ) ).isDirectory() ) //read all files in folder
+            System.out.println( "Unable to create export folder " + folder );
+            return;
+        }
+
+        ReplayLoader loader = new ReplayLoader( workerCount );
+        List<String> files = resolveFiles( arguments, loader );
+        AtomicInteger written = new AtomicInteger();
+        if ( overlaySteering ) //all replays share one chart
+        {
+            replays = loader.load( files, replayParser() );
+            if ( replays.isEmpty() )
+            {
+                System.out.println( "No replays to export." );
+                return;
+            }
+            XYChart steeringChart = buildCharts( replays ).get( 0 );
+            resizeLegend( steeringChart.getHeight(), steeringChart, replays.size() );
+            try
             {
-                String[] files = new File( arguments.get( 0 ) ).list();
-                Arrays.stream( files )
-                        .forEach( f -> replays.add( DonadigoReplayBuilder.buildReplay( arguments.get( 0 ) + "/" + f, overlaySteering ) ) );
+                exporter.write( steeringChart, "overlay" );
+                written.incrementAndGet();
             }
-            else //read each given file
+            catch ( IOException e )
             {
-                arguments.forEach( arg -> replays.add( DonadigoReplayBuilder.buildReplay( arg, overlaySteering ) ) );
+                System.out.println( "Unable to export overlay (" + e + ")" );
             }
         }
-        else // read gbx
+        else //charts are built and written by the loader workers as soon as their replay is parsed
         {
-            if ( arguments.size() == 1 && new File( arguments.get( 0 ) ).isDirectory() ) //read all gbx in folder
+            List<ReplayMetadata> times = loader.load( files, timeParser() );
+            if ( times.isEmpty() )
             {
-                String[] files = new File( arguments.get( 0 ) ).list();
-                Arrays.stream( files ).forEach( f ->
+                System.out.println( "No replays to export." );
+                return;
+            }
+            Collections.sort( times, Comparator.comparingInt( ReplayMetadata::getRaceTime ) );
+            List<String> sortedFiles = new ArrayList<>();
+            times.forEach( m -> sortedFiles.add( m.getFile() ) );
+            ChartTimeline timeline = timeline( times.get( 0 ).getRaceTime(), times.get( times.size() - 1 ).getRaceTime() );
+
+            String rankFormat = "%0" + String.valueOf( sortedFiles.size() ).length() + "d-%s";
+            loader.load( sortedFiles, replayParser(), ( i, r ) ->
+            {
+                String name = r.getChartTitle() == null ? "replay" : r.getChartTitle();
+                try
                 {
-                    if ( f.toLowerCase().endsWith( ".replay.gbx" ) )
-                    {
-                        try
-                        {
-                            replays.add( GbxInputExtractor.parseReplayData( arguments.get( 0 ) + "/" + f, invertSteering ) );
-                        }
-                        catch ( Throwable e )
-                        {
-                            System.out.println( "Unable to extract input from: " + f );
-                            e.printStackTrace();
-                        }
-                    }
-                } );
+                    exporter.write( buildChart( r, timeline, i ), String.format( rankFormat, i + 1, name.replaceAll( "(?i)\\.replay\\.gbx$|\\.txt$", "" ) ) );
+                    written.incrementAndGet();
+                }
+                catch ( IOException e )
+                {
+                    throw new UncheckedIOException( e ); //reported with the files that failed to parse
+                }
+            } );
+        }
+        System.out.println( "Exported " + written + " charts to " + folder.getAbsolutePath() );
+    }
+
+    /**
+     * reads only the time of a replay, from the header or the archive table if possible
+     *
+     * @return
+     */
+    private ReplayLoader.ReplayParser<ReplayMetadata> timeParser()
+    {
+        ReplayLoader.ReplayParser<ReplayData> replayParser = replayParser();
+        return f ->
+        {
+            String archive = ReplayArchive.entryArchive( f );
+            if ( archive != null )
+            {
+                int index = ReplayArchive.entryIndex( f );
+                return new ReplayMetadata( f, openArchive( archive ).getTmVersion( index ), openArchive( archive ).getReplayTime( index ), null, null, null );
             }
-            else
+            if ( !donadigoInput )
             {
-                arguments.forEach( arg ->
+                ReplayMetadata metadata = GbxHeaderScanner.scan( f );
+                if ( metadata.getRaceTime() >= 0 )
                 {
-                    try
-                    {
-                        replays.add( GbxInputExtractor.parseReplayData( arg, invertSteering ) );
-                    }
-                    catch ( Throwable e )
+                    return metadata;
+                }
+            }
+            ReplayData replay = replayParser.parse( f ); //the time is only known after parsing
+            return new ReplayMetadata( f, replay.getTmVersion(), replay.getReplayTime(), null, null, null );
+        };
+    }
+
+    /**
+     * parses all given replays on the loader pool, archives are opened and only the fastest replays are parsed if a top k is set
+     *
+     * @param arguments
+     * @return replays in the order of the given files
+     */
+    public List<ReplayData> loadReplays( List<String> arguments )
+    {
+        ReplayLoader loader = new ReplayLoader( workerCount );
+        return loader.load( resolveFiles( arguments, loader ), replayParser() );
+    }
+
+    /**
+     * resolves the given arguments to the replay files that will be charted
+     *
+     * @param arguments
+     * @param loader used to read the headers if only the fastest replays are charted
+     * @return
+     */
+    private List<String> resolveFiles( List<String> arguments, ReplayLoader loader )
+    {
+        List<String> files = new ArrayList<>();
+        List<ReplayMetadata> archived = new ArrayList<>(); //replays of archives, their times are known from the archive table
+        for ( String f : ReplayLoader.listReplayFiles( arguments, !donadigoInput ) )
+        {
+            if ( ReplayArchive.isArchive( f ) )
+            {
+                try
+                {
+                    ReplayArchive archive = openArchive( f );
+                    for ( int i = 0; i < archive.size(); i++ )
                     {
-                        System.out.println( "Unable to extract input from: " + arg );
-                        e.printStackTrace();
+                        archived.add( new ReplayMetadata( ReplayArchive.entryPath( f, i ), archive.getTmVersion( i ), archive.getReplayTime( i ), null,
+                                null, null ) );
                     }
-                } );
+                }
+                catch ( IOException e )
+                {
+                    System.out.println( "Unable to open archive " + f + ": " + e.getMessage() );
+                }
+            }
+            else
+            {
+                files.add( f );
+            }
+        }
+
+        if ( !donadigoInput && topK > 0 ) //only parse the fastest runs, decided by their headers
+        {
+            List<ReplayMetadata> headers = loader.load( files, GbxHeaderScanner::scan );
+            headers.addAll( archived );
+            List<String> fastestFiles = new ArrayList<>();
+            GbxHeaderScanner.fastest( headers, topK ).forEach( m -> fastestFiles.add( m.getFile() ) );
+            return fastestFiles;
+        }
+        archived.forEach( m -> files.add( m.getFile() ) );
+        return files;
+    }
+
+    private ReplayLoader.ReplayParser<ReplayData> replayParser()
+    {
+        return f ->
+        {
+            String archive = ReplayArchive.entryArchive( f );
+            if ( archive != null ) //already parsed, only decoded
+            {
+                return openArchive( archive ).get( ReplayArchive.entryIndex( f ) );
+            }
+            if ( donadigoInput )
+            {
+                return DonadigoReplayBuilder.buildReplay( f, overlaySteering );
             }
+            return GbxInputExtractor.parseReplayData( f, invertSteering );
+        };
+    }
+
+    /**
+     * @param file
+     * @return the archive, every archive is only opened once
+     * @throws IOException
+     */
+    private ReplayArchive openArchive( String file ) throws IOException
+    {
+        ReplayArchive archive = archives.get( file );
+        if ( archive == null )
+        {
+            archive = ReplayArchive.open( Paths.get( file ) );
+            ReplayArchive previous = archives.putIfAbsent( file, archive );
+            archive = previous != null ? previous : archive;
         }
+        return archive;
+    }
+
+    /**
+     * creates the charts for the given replays without showing them
+     *
+     * @param replays
+     * @param overlaySteering
+     * @param invertSteering
+     * @param matchTimeline
+     * @return one chart in overlay mode, one chart per replay (fastest first) otherwise
+     */
+    public List<XYChart> buildCharts( List<ReplayData> replays, boolean overlaySteering, boolean invertSteering, boolean matchTimeline )
+    {
+        this.overlaySteering = overlaySteering;
+        this.invertSteering = invertSteering;
+        this.matchTimeline = matchTimeline;
+        this.replays = new ArrayList<>( replays );
+        return buildCharts( this.replays );
+    }
 
+    private List<XYChart> buildCharts( List<ReplayData> replays )
+    {
+        List<XYChart> charts = new ArrayList<>();
         if ( overlaySteering ) //overlay all datasets in one chart
         {
             XYChart steeringChart = new XYChartBuilder().width( 1440 ).height( 320 ).build();
             steeringChart.getStyler().setTheme( new ReplayTheme() );
             initChart( steeringChart, replays.get( 0 ), -1, -1 );
             steeringChart.getStyler().setLegendPosition( Styler.LegendPosition.InsideNW );
-            replays.forEach( r ->
-                    steeringChart.addSeries( r.getChartTitleShort(), r.getTimestamps(), r.getSteering() ).setMarker( SeriesMarkers.NONE ) );
-
-            List<XYChart> charts = new ArrayList<>();
+            replays.forEach( r -> addOverlaySeries( steeringChart, r ) );
             charts.add( steeringChart );
-            JFrame frame = new SwingWrapper( charts, charts.size(), 1 ).setTitle( "Replay Chart" ).displayChartMatrix();
+        }
+        else //render every dataset in separate chart
+        {
+            ChartTimeline timeline = prepareCharts( replays );
+            for ( int i = 0; i < replays.size(); i++ )
+            {
+                charts.add( buildChart( replays.get( i ), timeline, i ) );
+            }
+        }
+        return charts;
+    }
+
+    private void addOverlaySeries( XYChart steeringChart, ReplayData r )
+    {
+        decimator.addSeries( steeringChart, r.getChartTitleShort(), r.getTimestamps(), r.getSteering() ).setMarker( SeriesMarkers.NONE );
+    }
+
+    /**
+     * time range shared by all charts of a replay set
+     */
+    private static final class ChartTimeline
+    {
+        private int      fastestTime;
+        private int      slowestTime;
+        private double[] timestampsLong;
+    }
+
+    /**
+     * sorts the replays by time (fastest first) and computes the shared timeline
+     *
+     * @param replays
+     * @return
+     */
+    private ChartTimeline prepareCharts( List<ReplayData> replays )
+    {
+        //sort by time
+        Collections.sort( replays, ( r1, r2 ) -> r1.getReplayTime() == r2.getReplayTime() ? 0 : r1.getReplayTime() < r2.getReplayTime() ? -1 : 1 );
+        return sortedTimeline( replays );
+    }
+
+    /**
+     * @param replays sorted by time
+     * @return
+     */
+    private ChartTimeline sortedTimeline( List<ReplayData> replays )
+    {
+        return timeline( replays.get( 0 ).getReplayTime(), replays.get( replays.size() - 1 ).getReplayTime() );
+    }
+
+    /**
+     * @param fastestTime
+     * @param slowestTime
+     * @return
+     */
+    private ChartTimeline timeline( int fastestTime, int slowestTime )
+    {
+        ChartTimeline timeline = new ChartTimeline();
+        timeline.fastestTime = fastestTime;
+        timeline.slowestTime = slowestTime;
+        if( matchTimeline ) //timestamp array equal for all replays
+        {
+            timeline.timestampsLong = Timeline.of( Timeline.length( timeline.slowestTime ) );
+        }
+        return timeline;
+    }
+
+    /**
+     * creates the chart of a single replay, replays of one set can be charted concurrently
+     *
+     * @param r
+     * @param timeline
+     * @param replayIndex position of the replay in the sorted set
+     * @return
+     */
+    private XYChart buildChart( ReplayData r, ChartTimeline timeline, int replayIndex )
+    {
+        Profiler.start( E_Stage.CHART );
+        XYChart chart = new XYChartBuilder().width( 1440 ).height( 200 ).build();
+        chart.getStyler().setTheme( new ReplayTheme() );
+        initChart( chart, r, timeline.fastestTime, replayIndex );
+        chart.getStyler().setLegendVisible( false );
+        chart.setTitle( r.getChartTitle() );
+
+        double[] acceleration = r.getAcceleration(); //expanded once per chart
+        if ( acceleration != null )
+        {
+            //create chart, use universal timestamps in align mode, shorter runs are padded without throttle
+            XYSeries accelerationSeries = decimator.addSeries( chart, "Acceleration", matchTimeline ? timeline.timestampsLong : r.getTimestamps(), acceleration );
+            accelerationSeries.setXYSeriesRenderStyle( XYSeries.XYSeriesRenderStyle.Area );
+            accelerationSeries.setMarker( SeriesMarkers.NONE );
+            accelerationSeries.setFillColor( new Color( 180, 255, 160 ) );
+            accelerationSeries.setLineColor( new Color( 0, 0, 0, 0 ) );
+        }
+
+        double[] brake = r.getBrake(); //expanded once per chart
+        if ( !overlaySteering && brake != null )
+        {
+            XYSeries brakeSeries = decimator.addSeries( chart, "Brake", r.getTimestamps(), brake );
+            brakeSeries.setXYSeriesRenderStyle( XYSeries.XYSeriesRenderStyle.Area );
+            brakeSeries.setMarker( SeriesMarkers.NONE );
+            brakeSeries.setFillColor( new Color( 255, 180, 160 ) );
+            brakeSeries.setLineColor( new Color( 0, 0, 0, 0 ) );
+        }
+
+        double[] steering = r.getSteering();
+        if ( !overlaySteering && steering != null )
+        {
+            XYSeries steeringSeries = decimator.addSeries( chart, "Steering", r.getTimestamps(), steering );
+            steeringSeries.setLineWidth( 1.4f );
+            steeringSeries.setMarker( SeriesMarkers.NONE );
+            steeringSeries.setLineColor( Color.BLACK );
+        }
+        if ( !overlaySteering && r.getRespawns().size() > 0 )
+        {
+            r.getRespawns().forEach( time -> drawRespawn( chart, time ) );
+        }
+
+        int legendTime = r.getReplayTime();
+        if ( matchTimeline )
+        {
+            legendTime = r.getTmVersion() == E_TmVersion.TM2 ? timeline.slowestTime - ( timeline.slowestTime % 10 ) : timeline.slowestTime;
+        }
+        initCustomLegend( chart, r, legendTime );
+        Profiler.stop( E_Stage.CHART );
+        return chart;
+    }
+
+    /**
+     * result window, separate charts are added while the replays are parsed in the background
+     */
+    private final class ChartWindow implements ChartList.ChartSource
+    {
+        private final JFrame           frame        = new JFrame( "Replay Chart" );
+        private final JProgressBar     progressBar  = new JProgressBar();
+        private final JButton          cancelButton = new JButton( "Cancel" );
+        private final ChartList        chartList    = new ChartList( 0, 200, this );
+        private final Timer            refreshTimer = new Timer( 250, e -> refresh() );
+        private final List<ReplayData> loaded       = new ArrayList<>(); //only used on the event thread
+
+        private final Map<String, ReplayData> loadedFiles    = new ConcurrentHashMap<>(); //normalized path -> replay
+        private final Map<String, ReplayData> watchedReplays = new LinkedHashMap<>(); //written before the first load finished
+
+        private SwingWorker<List<ReplayData>, ReplayData> worker;
+        private ReplayWatcher                             watcher;
+        private List<ReplayData>                          sorted       = new ArrayList<>();
+        private ChartTimeline                             timeline;
+        private XYChart                                   overlayChart;
+        private volatile int                              fileCount    = 0;
+        private long                                      startTime;
+        private boolean                                   changed      = false;
+        private boolean                                   finished     = false;
 
-            frame.setMinimumSize( new Dimension( 900, 320 ) );
-            resizeLegend( frame, steeringChart, replays.size() );
+        void open( List<String> arguments, boolean isUiMode )
+        {
+            frame.setDefaultCloseOperation( isUiMode ? JFrame.DISPOSE_ON_CLOSE : JFrame.EXIT_ON_CLOSE );
             if ( isUiMode )
             {
-                try
-                {
-                    frame.setIconImage( ImageIO.read(
-                            Thread.currentThread().getContextClassLoader().getResourceAsStream( "icon.png" ) ) );
-                }
-                catch ( Throwable e )
+                setIcon( frame );
+            }
+
+            progressBar.setStringPainted( true );
+            progressBar.setIndeterminate( true ); //until the amount of files is known
+            progressBar.setString( "Reading replays..." );
+            cancelButton.addActionListener( e -> worker.cancel( true ) );
+            JPanel progressPanel = new JPanel( new BorderLayout( 5, 0 ) );
+            progressPanel.setBorder( BorderFactory.createEmptyBorder( 4, 4, 4, 4 ) );
+            progressPanel.add( progressBar, BorderLayout.CENTER );
+            progressPanel.add( cancelButton, BorderLayout.EAST );
+            frame.add( progressPanel, BorderLayout.SOUTH );
+
+            if ( overlaySteering ) //the overlay chart is shown once all replays are read
+            {
+                JPanel placeholder = new JPanel();
+                placeholder.setPreferredSize( new Dimension( 1440, 320 ) );
+                frame.add( placeholder, BorderLayout.CENTER );
+            }
+            else
+            {
+                frame.add( chartList.createScrollPane( 4 ), BorderLayout.CENTER );
+            }
+            frame.addWindowListener( new WindowAdapter()
+            {
+                @Override
+                public void windowClosed( WindowEvent e )
                 {
-                    //ignore it
+                    worker.cancel( true );
+                    refreshTimer.stop();
+                    stopWatching();
                 }
-                javax.swing.SwingUtilities.invokeLater(
-                        () -> frame.setDefaultCloseOperation( JFrame.DISPOSE_ON_CLOSE )
-                );
+            } );
+            frame.pack();
+            frame.setMinimumSize( new Dimension( 900, 260 ) );
+            frame.setVisible( true );
+
+            if ( watchFolder ) //started before the first load, so no replay written meanwhile is missed
+            {
+                startWatching( arguments );
             }
 
-            frame.addComponentListener( new ComponentAdapter()
+            startTime = System.nanoTime();
+            worker = new SwingWorker<List<ReplayData>, ReplayData>()
             {
-                public void componentResized( ComponentEvent evt )
+                @Override
+                protected List<ReplayData> doInBackground()
+                {
+                    ReplayLoader loader = new ReplayLoader( workerCount );
+                    List<String> files = resolveFiles( arguments, loader );
+                    fileCount = files.size();
+                    return loader.load( files, replayParser(), ( index, replay ) ->
+                    {
+                        loadedFiles.put( normalize( files.get( index ) ), replay );
+                        if ( !isCancelled() )
+                        {
+                            publish( replay );
+                        }
+                    } );
+                }
+
+                @Override
+                protected void process( List<ReplayData> chunk )
                 {
-                    resizeLegend( frame, steeringChart, replays.size() );
+                    if ( finished )
+                    {
+                        return;
+                    }
+                    loaded.addAll( chunk );
+                    changed = true;
+                    updateProgress();
+                    if ( sorted.isEmpty() ) //show the first chart right away
+                    {
+                        refresh();
+                    }
                 }
-            } );
+
+                @Override
+                protected void done()
+                {
+                    finish();
+                }
+            };
+            refreshTimer.start();
+            worker.execute();
         }
-        else //render every dataset in separate chart
-        {
-            List<XYChart> charts = new ArrayList<>();
 
-            int fastestTime = replays.get( 0 ).getReplayTime();
-            int slowestTime = replays.get( 0 ).getReplayTime();
-            for( ReplayData r : replays )
+        /**
+         * sorts the loaded replays and rebuilds the visible charts, called at most every 250ms while loading
+         */
+        private void refresh()
+        {
+            if ( !changed || overlaySteering )
             {
-                fastestTime = r.getReplayTime() < fastestTime ? r.getReplayTime() : fastestTime;
-                slowestTime = r.getReplayTime() > slowestTime ? r.getReplayTime() : slowestTime;
+                return;
             }
+            changed = false;
+            sorted = new ArrayList<>( loaded );
+            timeline = prepareCharts( sorted );
+            replays = sorted;
+            chartList.reset( sorted.size() );
+        }
 
-            List<Double> timestampsLong = new ArrayList<>();
-            if( matchTimeline ) //create new timestamp list equal for all replays
+        private void finish()
+        {
+            finished = true;
+            refreshTimer.stop();
+            cancelButton.setEnabled( false );
+            progressBar.setIndeterminate( false );
+            if ( !worker.isCancelled() )
             {
-                double tsIndex = 0.0;
-                while ( tsIndex < slowestTime )
+                try
+                {
+                    loaded.clear();
+                    loaded.addAll( worker.get() ); //also contains replays whose chunk wasn't processed yet
+                }
+                catch ( Throwable e )
                 {
-                    timestampsLong.add( tsIndex );
-                    tsIndex += 10;
+                    e.printStackTrace();
                 }
             }
+            changed = true;
 
-            //sort by time
-            Collections.sort( replays, ( r1, r2 ) -> r1.getReplayTime() == r2.getReplayTime() ? 0 : r1.getReplayTime() < r2.getReplayTime() ? -1 : 1 );
+            double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+            if ( worker.isCancelled() )
+            {
+                progressBar.setString( String.format( "Cancelled after %d of %d replays", loaded.size(), fileCount ) );
+            }
+            else if ( loaded.size() < fileCount )
+            {
+                progressBar.setString( String.format( "%d of %d replays read in %.1f s", loaded.size(), fileCount, seconds ) );
+            }
+            else
+            {
+                progressBar.setString( String.format( "%d replays read in %.1f s", loaded.size(), seconds ) );
+            }
 
-            for( ReplayData r : replays )
+            if ( !loaded.isEmpty() )
             {
-                XYChart chart = new XYChartBuilder().width( 1440 ).height( 200 ).build();
-                chart.getStyler().setTheme( new ReplayTheme() );
-                initChart( chart, r, fastestTime, charts.size()  );
-                chart.getStyler().setLegendVisible( false );
-                chart.setTitle( r.getChartTitle() );
+                if ( overlaySteering )
+                {
+                    showOverlay();
+                }
+                else
+                {
+                    refresh();
+                }
+            }
+
+            if ( worker.isCancelled() )
+            {
+                stopWatching();
+            }
+            watchedReplays.forEach( this::addWatched );
+            watchedReplays.clear();
+        }
 
-                if ( r.getAcceleration() != null )
+        /**
+         * parses every replay the game writes into the folder, only if a single folder is charted
+         *
+         * @param arguments
+         */
+        private void startWatching( List<String> arguments )
+        {
+            if ( arguments.size() != 1 || !new File( arguments.get( 0 ) ).isDirectory() )
+            {
+                System.out.println( "Only a single folder can be watched." );
+                return;
+            }
+            try
+            {
+                watcher = new ReplayWatcher( arguments.get( 0 ), file ->
                 {
-                    if( r.getTmVersion() == E_TmVersion.TM2 )
+                    try
                     {
-                        slowestTime = slowestTime - ( slowestTime % 10 );
+                        ReplayData replay = GbxInputExtractor.parseReplayData( file, invertSteering );
+                        javax.swing.SwingUtilities.invokeLater( () -> addWatched( file, replay ) );
                     }
-                    if( matchTimeline && r.getReplayTime() < slowestTime )
+                    catch ( Throwable e )
                     {
-                        int index = r.getReplayTime();
-
-                        while( index < slowestTime )
-                        {
-                            r.addAcceleration( 0.0 );
-                            index += 10;
-                        }
+                        System.out.println( "Unable to extract input from " + file + " (" + e + ")" );
                     }
+                } );
+                watcher.start();
+            }
+            catch ( IOException e )
+            {
+                e.printStackTrace();
+            }
+        }
 
-                    //create chart, use universal timestampList in align mode
-                    XYSeries accelerationSeries = chart.addSeries( "Acceleration", matchTimeline ? ReplayData.listToArray( timestampsLong ) : r.getTimestamps(), r.getAcceleration() );
-                    accelerationSeries.setXYSeriesRenderStyle( XYSeries.XYSeriesRenderStyle.Area );
-                    accelerationSeries.setMarker( SeriesMarkers.NONE );
-                    accelerationSeries.setFillColor( new Color( 180, 255, 160 ) );
-                    accelerationSeries.setLineColor( new Color( 0, 0, 0, 0 ) );
+        private void stopWatching()
+        {
+            if ( watcher != null )
+            {
+                try
+                {
+                    watcher.close();
                 }
-
-                if ( !overlaySteering && r.getBrake() != null )
+                catch ( IOException e )
                 {
-                    XYSeries brakeSeries = chart.addSeries( "Brake", r.getTimestamps(), r.getBrake() );
-                    brakeSeries.setXYSeriesRenderStyle( XYSeries.XYSeriesRenderStyle.Area );
-                    brakeSeries.setMarker( SeriesMarkers.NONE );
-                    brakeSeries.setFillColor( new Color( 255, 180, 160 ) );
-                    brakeSeries.setLineColor( new Color( 0, 0, 0, 0 ) );
+                    //ignore it
                 }
+                watcher = null;
+            }
+        }
 
-                if ( !overlaySteering && r.getSteering() != null )
+        /**
+         * adds a new replay or replaces the replay of a changed file, without touching any other replay
+         *
+         * @param file
+         * @param replay
+         */
+        private void addWatched( String file, ReplayData replay )
+        {
+            if ( watcher == null )
+            {
+                return;
+            }
+            if ( !finished )
+            {
+                watchedReplays.put( file, replay );
+                return;
+            }
+
+            ReplayData previous = loadedFiles.put( normalize( file ), replay );
+            if ( previous != null )
+            {
+                loaded.remove( previous );
+            }
+            loaded.add( replay );
+
+            if ( overlaySteering )
+            {
+                if ( overlayChart == null )
                 {
-                    XYSeries steeringSeries = chart.addSeries( "Steering", r.getTimestamps(), r.getSteering() );
-                    steeringSeries.setLineWidth( 1.4f );
-                    steeringSeries.setMarker( SeriesMarkers.NONE );
-                    steeringSeries.setLineColor( Color.BLACK );
+                    showOverlay();
                 }
-                if ( !overlaySteering && r.getRespawns().size() > 0 )
+                else
                 {
-                    r.getRespawns().forEach( time -> drawRespawn( chart, time ) );
+                    if ( previous != null )
+                    {
+                        decimator.removeSeries( overlayChart, previous.getChartTitleShort() );
+                    }
+                    addOverlaySeries( overlayChart, replay );
+                    replays = new ArrayList<>( loaded );
+                    resizeLegend( frame.getHeight(), overlayChart, replays.size() );
+                    frame.repaint();
                 }
-
-                initCustomLegend( chart, r, matchTimeline ? slowestTime : r.getReplayTime() );
-                charts.add( chart );
             }
-
-            JFrame frame = new SwingWrapper( charts, charts.size(), 1 ).setTitle( "Replay Chart" ).displayChartMatrix();
-            frame.setMinimumSize( new Dimension( 1000, 160 * replays.size() ) );
-            if ( isUiMode )
+            else //insert at its position, the other charts are only moved
             {
-                try
+                if ( previous != null )
                 {
-                    frame.setIconImage( ImageIO.read(
-                            Thread.currentThread().getContextClassLoader().getResourceAsStream( "icon.png" ) ) );
+                    sorted.remove( previous );
                 }
-                catch ( Throwable e )
+                int low = 0; //binary search for the first slower replay
+                int high = sorted.size();
+                while ( low < high )
                 {
-                    //ignore it
+                    int middle = (low + high) >>> 1;
+                    if ( sorted.get( middle ).getReplayTime() > replay.getReplayTime() )
+                    {
+                        high = middle;
+                    }
+                    else
+                    {
+                        low = middle + 1;
+                    }
                 }
-                javax.swing.SwingUtilities.invokeLater(
-                        () -> frame.setDefaultCloseOperation( JFrame.DISPOSE_ON_CLOSE )
-                );
+                sorted.add( low, replay );
+                timeline = sortedTimeline( sorted );
+                replays = sorted;
+                chartList.reset( sorted.size() );
             }
+            progressBar.setString( String.format( "%d replays, watching for new replays", loaded.size() ) );
+        }
+
+        private void showOverlay()
+        {
+            replays = new ArrayList<>( loaded );
+            XYChart steeringChart = buildCharts( replays ).get( 0 );
+            overlayChart = steeringChart;
+            Container content = frame.getContentPane();
+            content.remove( ((BorderLayout) content.getLayout()).getLayoutComponent( BorderLayout.CENTER ) );
+            content.add( new XChartPanel<>( steeringChart ), BorderLayout.CENTER );
+            resizeLegend( frame.getHeight(), steeringChart, replays.size() );
+            frame.revalidate();
+            frame.repaint();
 
             frame.addComponentListener( new ComponentAdapter()
             {
                 public void componentResized( ComponentEvent evt )
                 {
-                    if ( frame.getHeight() > 300 * replays.size() )
-                    {
-                        frame.resize( new Dimension( frame.getWidth(), 300 * replays.size() ) );
-                    }
+                    resizeLegend( frame.getHeight(), steeringChart, replays.size() );
+                    decimator.resize( steeringChart, frame.getWidth() );
                 }
             } );
         }
+
+        private void updateProgress()
+        {
+            double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+            int total = Math.max( fileCount, loaded.size() );
+            progressBar.setIndeterminate( false );
+            progressBar.setMaximum( Math.max( 1, total ) );
+            progressBar.setValue( loaded.size() );
+            progressBar.setString( String.format( "%d / %d replays, %.0f replays/s", loaded.size(), total, loaded.size() / Math.max( seconds, 0.001 ) ) );
+        }
+
+        @Override
+        public XYChart build( int index )
+        {
+            return buildChart( sorted.get( index ), timeline, index );
+        }
+
+        @Override
+        public void resized( XYChart chart, int width )
+        {
+            decimator.resize( chart, width );
+        }
+
+        @Override
+        public void released( XYChart chart )
+        {
+            decimator.release( chart );
+        }
+    }
+
+    private static String normalize( String file )
+    {
+        return Paths.get( file ).toAbsolutePath().normalize().toString();
+    }
+
+    private static void setIcon( JFrame frame )
+    {
+        try
+        {
+            frame.setIconImage( ImageIO.read(
+                    Thread.currentThread().getContextClassLoader().getResourceAsStream( "icon.png" ) ) );
+        }
+        catch ( Throwable e )
+        {
+            //ignore it
+        }
+    }
+
+    /**
+     * sets the amount of threads used to parse replays
+     *
+     * @param workerCount
+     */
+    public void setWorkerCount( int workerCount )
+    {
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * only charts the k fastest replays, 0 charts all
+     *
+     * @param topK
+     */
+    public void setTopK( int topK )
+    {
+        this.topK = topK;
+    }
+
+    /**
+     * keeps charting new and changed replays of the given folder while the window is open
+     *
+     * @param watchFolder
+     */
+    public void setWatchFolder( boolean watchFolder )
+    {
+        this.watchFolder = watchFolder;
     }
 
     private void drawRespawn( XYChart chart, Integer time )
@@ -257,24 +838,23 @@ public final class ReplayChart
     /**
      * resizes the max/min of the x-axis to fit the legend in the graph
      *
-     * @param frame
+     * @param height height of the window or image
      * @param chart
      * @param size
      */
-    private void resizeLegend( JFrame frame, XYChart chart, int size )
+    private void resizeLegend( int height, XYChart chart, int size )
     {
-        int height = frame.getHeight();
         if ( height < 400 )
         {
-            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((10000000 * size) / frame.getHeight()) );
+            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((10000000 * size) / height) );
         }
         else if ( height < 500 )
         {
-            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((7250000 * size) / frame.getHeight()) );
+            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((7250000 * size) / height) );
         }
         else
         {
-            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((5000000 * size) / frame.getHeight()) );
+            chart.getStyler().setYAxisMax( GbxSteeringInput.MAX + ((5000000 * size) / height) );
         }
     }
 
@@ -2,6 +2,9 @@ package de.reilem.replaychart;
 
 import de.reilem.replaychart.gbx.E_TmVersion;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,26 +18,34 @@ public class ReplayData
     private int            replayTime;
     private E_TmVersion    tmVersion;
 
-    private List<Double>  steering;
-    private List<Double>  acceleration;
-    private List<Double>  brake;
-    private List<Double>  timestamps;
+    private ReplayChannel steering;
+    private ReplayChannel acceleration;
+    private ReplayChannel brake;
     private List<Integer> respawns;
 
-    private int timeOnThrottle;
-    private int timeOnBrake;
     private int keyboardSteers;
     private int padSteers;
 
     public ReplayData()
     {
-        steering = new ArrayList<>();
-        acceleration = new ArrayList<>();
-        brake = new ArrayList<>();
-        timestamps = new ArrayList<>();
+        this( E_ChannelStorage.SAMPLES );
+    }
+
+    public ReplayData( E_ChannelStorage storage )
+    {
+        this( storage, storage );
+    }
+
+    /**
+     * @param steeringStorage storage of the steering channel
+     * @param pedalStorage storage of the acceleration and brake channels
+     */
+    public ReplayData( E_ChannelStorage steeringStorage, E_ChannelStorage pedalStorage )
+    {
+        steering = steeringStorage.newChannel();
+        acceleration = pedalStorage.newChannel();
+        brake = pedalStorage.newChannel();
         respawns = new ArrayList<>();
-        timeOnThrottle = 0;
-        timeOnBrake = 0;
         keyboardSteers = 0;
         padSteers = 0;
     }
@@ -46,22 +57,53 @@ public class ReplayData
 
     public double[] getSteering()
     {
-        return steering.isEmpty() ? null : listToArray( steering );
+        return steering.isEmpty() ? null : steering.toArray();
     }
 
+    /**
+     * timestamps for the x-axis, one for every 10ms of the replay.
+     * The returned array is shared and must not be modified.
+     *
+     * @return
+     */
     public double[] getTimestamps()
     {
-        return timestamps.isEmpty() ? null : listToArray( timestamps );
+        int length = Timeline.length( replayTime );
+        return length == 0 ? null : Timeline.of( length );
     }
 
-    public void addSteering( double d )
+    /**
+     * @param channel
+     * @return the stored values of the channel, must not be modified
+     */
+    public ReplayChannel getChannel( E_InputChannel channel )
     {
-        steering.add( d );
+        switch ( channel )
+        {
+            case STEERING:
+                return steering;
+            case ACCELERATION:
+                return acceleration;
+            default:
+                return brake;
+        }
+    }
+
+    /**
+     * adds the same value count times to the channel
+     *
+     * @param channel
+     * @param d
+     * @param count
+     */
+    public void addRun( E_InputChannel channel, double d, int count )
+    {
+        getChannel( channel ).add( d, count );
     }
 
-    public void addTimestamp( double d )
+    public void addSteering( double d )
     {
-        timestamps.add( d );
+        steering.add( d );
     }
 
     public String getChartTitle()
@@ -84,14 +126,22 @@ public class ReplayData
         this.type = type;
     }
 
+    /**
+     * @return steering type as set by the parser, null if not set
+     */
+    public E_SteeringType getSteeringType()
+    {
+        return type;
+    }
+
     public double[] getAcceleration()
     {
-        return acceleration.isEmpty() ? null : listToArray( acceleration );
+        return acceleration.isEmpty() ? null : acceleration.toArray();
     }
 
     public double[] getBrake()
     {
-        return brake.isEmpty() ? null : listToArray( brake );
+        return brake.isEmpty() ? null : brake.toArray();
     }
 
     public void addAcceleration( double d )
@@ -130,24 +180,50 @@ public class ReplayData
         }
     }
 
+    /**
+     * amount of 10ms steps spend on the throttle
+     *
+     * @return
+     */
     public int getTimeOnThrottle()
     {
-        return timeOnThrottle;
+        return acceleration.countNonZero();
     }
 
+    /**
+     * amount of 10ms steps spend on the brake
+     *
+     * @return
+     */
     public int getTimeOnBrake()
     {
-        return timeOnBrake;
+        return brake.countNonZero();
+    }
+
+    /**
+     * @return amount of 10ms steps steered with a pad
+     */
+    public int getPadSteers()
+    {
+        return padSteers;
+    }
+
+    /**
+     * @return amount of 10ms steps steered with the keyboard
+     */
+    public int getKeyboardSteers()
+    {
+        return keyboardSteers;
     }
 
-    public void addThrottleAction()
+    public void setPadSteers( int padSteers )
     {
-        timeOnThrottle++;
+        this.padSteers = padSteers;
     }
 
-    public void addBrakeAction()
+    public void setKeyboardSteers( int keyboardSteers )
     {
-        timeOnBrake++;
+        this.keyboardSteers = keyboardSteers;
     }
 
     public void addPadAction()
@@ -182,22 +258,118 @@ public class ReplayData
 
     public String getPercentTimeOnThrottle()
     {
-        return "Throttle: [" + ReplayChart.roundDoubleTwoDecimalPlaces( ((double) (timeOnThrottle * 10) / (double) replayTime) * 100 )
+        return "Throttle: [" + ReplayChart.roundDoubleTwoDecimalPlaces( ((double) (getTimeOnThrottle() * 10) / (double) replayTime) * 100 )
                 + "%]";
     }
 
     public String getPercentTimeOnBrake()
     {
-        return "Brake: [" + ReplayChart.roundDoubleTwoDecimalPlaces( ((double) (timeOnBrake * 10) / (double) replayTime) * 100 ) + "%]";
+        return "Brake: [" + ReplayChart.roundDoubleTwoDecimalPlaces( ((double) (getTimeOnBrake() * 10) / (double) replayTime) * 100 ) + "%]";
     }
 
-    public static double[] listToArray( List<Double> list )
+    /**
+     * writes this replay in a compact binary form, see {@link #read(DataInputStream)}
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write( DataOutputStream out ) throws IOException
     {
-        double[] array = new double[list.size()];
-        for ( int i = 0; i < array.length; i++ )
+        out.writeBoolean( fileName != null );
+        if ( fileName != null )
+        {
+            out.writeUTF( fileName );
+        }
+        out.writeByte( type == null ? -1 : type.ordinal() );
+        out.writeInt( replayTime );
+        out.writeByte( tmVersion == null ? -1 : tmVersion.ordinal() );
+        writeChannel( out, steering );
+        writeChannel( out, acceleration );
+        writeChannel( out, brake );
+        out.writeInt( respawns.size() );
+        for ( int respawn : respawns )
+        {
+            out.writeInt( respawn );
+        }
+        out.writeInt( keyboardSteers );
+        out.writeInt( padSteers );
+    }
+
+    /**
+     * reads a replay written by {@link #write(DataOutputStream)}
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static ReplayData read( DataInputStream in ) throws IOException
+    {
+        ReplayData replay = new ReplayData();
+        replay.fileName = in.readBoolean() ? in.readUTF() : null;
+        byte type = in.readByte();
+        replay.type = type < 0 ? null : E_SteeringType.values()[type];
+        replay.replayTime = in.readInt();
+        byte tmVersion = in.readByte();
+        replay.tmVersion = tmVersion < 0 ? null : E_TmVersion.values()[tmVersion];
+        replay.steering = readChannel( in );
+        replay.acceleration = readChannel( in );
+        replay.brake = readChannel( in );
+        int respawnCount = in.readInt();
+        for ( int i = 0; i < respawnCount; i++ )
+        {
+            replay.respawns.add( in.readInt() );
+        }
+        replay.keyboardSteers = in.readInt();
+        replay.padSteers = in.readInt();
+        return replay;
+    }
+
+    private static void writeChannel( DataOutputStream out, ReplayChannel channel ) throws IOException
+    {
+        if ( channel instanceof StepColumn ) //write runs only
+        {
+            StepColumn steps = (StepColumn) channel;
+            out.writeByte( E_ChannelStorage.EVENTS.ordinal() );
+            out.writeInt( steps.size() );
+            out.writeInt( steps.getRunCount() );
+            for ( int i = 0; i < steps.getRunCount(); i++ )
+            {
+                out.writeInt( steps.getRunLength( i ) );
+                out.writeDouble( steps.getRunValue( i ) );
+            }
+        }
+        else
+        {
+            out.writeByte( E_ChannelStorage.SAMPLES.ordinal() );
+            out.writeInt( channel.size() );
+            for ( int i = 0; i < channel.size(); i++ )
+            {
+                out.writeDouble( channel.get( i ) );
+            }
+        }
+    }
+
+    private static ReplayChannel readChannel( DataInputStream in ) throws IOException
+    {
+        E_ChannelStorage storage = E_ChannelStorage.values()[in.readByte()];
+        ReplayChannel channel = storage.newChannel();
+        int size = in.readInt();
+        if ( storage == E_ChannelStorage.EVENTS )
+        {
+            int runs = in.readInt();
+            for ( int i = 0; i < runs; i++ )
+            {
+                int length = in.readInt();
+                channel.add( in.readDouble(), length );
+            }
+        }
+        else
         {
-            array[i] = list.get( i );
+            for ( int i = 0; i < size; i++ )
+            {
+                channel.add( in.readDouble() );
+            }
         }
-        return array;
+        return channel;
     }
 }
@@ -0,0 +1,178 @@
+package de.reilem.replaychart;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parses many replay files on a fixed pool of workers.
+ * The amount of files being parsed at once is bounded, results keep the order of the given files.
+ */
+public final class ReplayLoader
+{
+    /**
+     * parses a single replay file
+     */
+    public interface ReplayParser<T>
+    {
+        T parse( String file ) throws Throwable;
+    }
+
+    /**
+     * is told about every replay as soon as it is parsed, called from the worker threads
+     */
+    public interface ReplayListener<T>
+    {
+        void loaded( int index, T replay );
+    }
+
+    private final int workerCount;
+    private final int maxInFlight;
+
+    public ReplayLoader()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    public ReplayLoader( int workerCount )
+    {
+        this( workerCount, workerCount * 4 );
+    }
+
+    public ReplayLoader( int workerCount, int maxInFlight )
+    {
+        if ( workerCount < 1 || maxInFlight < 1 )
+        {
+            throw new IllegalArgumentException( "Worker count and in-flight limit must be positive!" );
+        }
+        this.workerCount = workerCount;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * parses all given files, failed files are skipped and reported once all files are done
+     *
+     * @param files
+     * @param parser
+     * @return parsed replays in the order of the given files
+     */
+    public <T> List<T> load( List<String> files, ReplayParser<T> parser )
+    {
+        return load( files, parser, null );
+    }
+
+    /**
+     * parses all given files and reports each replay when it is done.
+     * Interrupting the calling thread stops queueing files and returns the replays parsed so far
+     *
+     * @param files
+     * @param parser
+     * @param listener may be null
+     * @return parsed replays in the order of the given files
+     */
+    public <T> List<T> load( List<String> files, ReplayParser<T> parser, ReplayListener<T> listener )
+    {
+        AtomicReferenceArray<T> results = new AtomicReferenceArray<>( files.size() );
+        AtomicReferenceArray<Throwable> failures = new AtomicReferenceArray<>( files.size() );
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( workerCount, Math.max( 1, files.size() ) ) );
+        Semaphore inFlight = new Semaphore( maxInFlight );
+        try
+        {
+            for ( int i = 0; i < files.size(); i++ )
+            {
+                inFlight.acquire(); //wait until a worker is done before queueing more files
+                int index = i;
+                executor.execute( () ->
+                {
+                    try
+                    {
+                        T replay = parser.parse( files.get( index ) );
+                        results.set( index, replay );
+                        if ( listener != null && replay != null )
+                        {
+                            listener.loaded( index, replay );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failures.set( index, e );
+                    }
+                    finally
+                    {
+                        inFlight.release();
+                    }
+                } );
+            }
+            executor.shutdown();
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        List<T> replays = new ArrayList<>( files.size() );
+        List<String> failedFiles = new ArrayList<>();
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            if ( results.get( i ) != null )
+            {
+                replays.add( results.get( i ) );
+            }
+            else if ( failures.get( i ) != null )
+            {
+                failedFiles.add( files.get( i ) + " (" + failures.get( i ) + ")" );
+            }
+        }
+        printFailures( failedFiles, files.size() );
+
+        return replays;
+    }
+
+    /**
+     * resolves the given arguments to replay files, a single folder is expanded to its (sorted) content
+     *
+     * @param arguments
+     * @param gbxOnly only keep *.replay.gbx files of a folder
+     * @return
+     */
+    public static List<String> listReplayFiles( List<String> arguments, boolean gbxOnly )
+    {
+        if ( arguments.size() == 1 && new File( arguments.get( 0 ) ).isDirectory() ) //read all files in folder
+        {
+            String[] files = new File( arguments.get( 0 ) ).list();
+            List<String> replayFiles = new ArrayList<>();
+            if ( files != null )
+            {
+                Arrays.sort( files );
+                for ( String f : files )
+                {
+                    if ( !gbxOnly || f.toLowerCase().endsWith( ".replay.gbx" ) )
+                    {
+                        replayFiles.add( arguments.get( 0 ) + "/" + f );
+                    }
+                }
+            }
+            return replayFiles;
+        }
+        return arguments;
+    }
+
+    private static void printFailures( List<String> failedFiles, int fileCount )
+    {
+        if ( failedFiles.isEmpty() )
+        {
+            return;
+        }
+        System.out.println( "Unable to extract input from " + failedFiles.size() + " of " + fileCount + " files:" );
+        failedFiles.forEach( f -> System.out.println( "  " + f ) );
+    }
+}
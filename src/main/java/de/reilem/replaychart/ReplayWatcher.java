@@ -0,0 +1,133 @@
+package de.reilem.replaychart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a folder for new or changed replays.
+ * A file is reported once the game stopped writing it: no events for a while and the same size on two checks.
+ */
+public final class ReplayWatcher implements Closeable
+{
+    private static final long QUIET_MILLIS = 500;
+
+    /**
+     * is told about every replay file that was written completely, called from the watcher thread
+     */
+    public interface ReplayFileListener
+    {
+        void written( String file );
+    }
+
+    private final Path               folder;
+    private final ReplayFileListener listener;
+    private final WatchService       watchService;
+    private final Map<Path, long[]>  pending = new HashMap<>(); //file -> time of the last event and last size
+    private final Thread             thread;
+
+    public ReplayWatcher( String folder, ReplayFileListener listener ) throws IOException
+    {
+        this.folder = Paths.get( folder );
+        this.listener = listener;
+        watchService = FileSystems.getDefault().newWatchService();
+        this.folder.register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+        thread = new Thread( this::watch, "replay-watcher" );
+        thread.setDaemon( true );
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void watch()
+    {
+        try
+        {
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                WatchKey key = watchService.poll( QUIET_MILLIS / 5, TimeUnit.MILLISECONDS );
+                long now = System.currentTimeMillis();
+                if ( key != null )
+                {
+                    for ( WatchEvent<?> event : key.pollEvents() )
+                    {
+                        Object context = event.context();
+                        if ( context instanceof Path && context.toString().toLowerCase().endsWith( ".replay.gbx" ) )
+                        {
+                            pending.put( folder.resolve( (Path) context ), new long[] { now, -1 } );
+                        }
+                    }
+                    if ( !key.reset() ) //folder was deleted
+                    {
+                        return;
+                    }
+                }
+                reportWrittenFiles( now );
+            }
+        }
+        catch ( InterruptedException | ClosedWatchServiceException e )
+        {
+            //watcher was closed
+        }
+    }
+
+    /**
+     * reports the pending files that didn't change since the last check
+     *
+     * @param now
+     */
+    private void reportWrittenFiles( long now )
+    {
+        Iterator<Map.Entry<Path, long[]>> iterator = pending.entrySet().iterator();
+        while ( iterator.hasNext() )
+        {
+            Map.Entry<Path, long[]> entry = iterator.next();
+            long[] state = entry.getValue();
+            if ( now - state[0] < QUIET_MILLIS )
+            {
+                continue;
+            }
+            long size;
+            try
+            {
+                size = Files.size( entry.getKey() );
+            }
+            catch ( IOException e ) //file was removed again
+            {
+                iterator.remove();
+                continue;
+            }
+            if ( size > 0 && size == state[1] )
+            {
+                iterator.remove();
+                listener.written( entry.getKey().toString() );
+            }
+            else //still growing, check again after the next quiet period
+            {
+                state[0] = now;
+                state[1] = size;
+            }
+        }
+    }
+}
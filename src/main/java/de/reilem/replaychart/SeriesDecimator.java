@@ -0,0 +1,198 @@
+package de.reilem.replaychart;
+
+import org.knowm.xchart.XYChart;
+import org.knowm.xchart.XYSeries;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reduces series to the points that are visible at the width of a chart before they are added to it.
+ * Every pixel column keeps its first, lowest, highest and last point, so steering reversals and throttle edges stay sharp.
+ */
+public final class SeriesDecimator
+{
+    private final boolean                               keepFullSeries;
+    private final Map<XYChart, Map<String, double[][]>> fullSeries = new IdentityHashMap<>();
+
+    /**
+     * @param keepFullSeries remember the full series to decimate them again after a resize
+     */
+    public SeriesDecimator( boolean keepFullSeries )
+    {
+        this.keepFullSeries = keepFullSeries;
+    }
+
+    /**
+     * adds the series decimated to the current width of the chart.
+     * A y-series shorter than x is padded with 0, a longer one is cut, the given arrays are never modified
+     *
+     * @param chart
+     * @param name
+     * @param x
+     * @param y
+     * @return
+     */
+    public XYSeries addSeries( XYChart chart, String name, double[] x, double[] y )
+    {
+        if ( keepFullSeries )
+        {
+            synchronized ( fullSeries )
+            {
+                fullSeries.computeIfAbsent( chart, c -> new LinkedHashMap<>() ).put( name, new double[][] { x, y } );
+            }
+        }
+        double[][] points = decimate( x, y, chart.getWidth() );
+        return chart.addSeries( name, points[0], points[1] );
+    }
+
+    /**
+     * decimates all series of the chart again for the given width
+     *
+     * @param chart
+     * @param width
+     */
+    public void resize( XYChart chart, int width )
+    {
+        Map<String, double[][]> series;
+        synchronized ( fullSeries )
+        {
+            series = fullSeries.get( chart );
+        }
+        if ( series == null || width <= 0 )
+        {
+            return;
+        }
+        series.forEach( ( name, s ) ->
+        {
+            double[][] points = decimate( s[0], s[1], width );
+            chart.updateXYSeries( name, points[0], points[1], null );
+        } );
+    }
+
+    /**
+     * removes the series from the chart
+     *
+     * @param chart
+     * @param name
+     */
+    public void removeSeries( XYChart chart, String name )
+    {
+        synchronized ( fullSeries )
+        {
+            Map<String, double[][]> series = fullSeries.get( chart );
+            if ( series != null )
+            {
+                series.remove( name );
+            }
+        }
+        chart.removeSeries( name );
+    }
+
+    /**
+     * forgets the full series of a chart that won't be resized again
+     *
+     * @param chart
+     */
+    public void release( XYChart chart )
+    {
+        synchronized ( fullSeries )
+        {
+            fullSeries.remove( chart );
+        }
+    }
+
+    /**
+     * splits the x range into buckets and keeps the first, min, max and last point of each bucket in their original order
+     *
+     * @param x ascending
+     * @param y padded with 0 or cut to the length of x
+     * @param buckets
+     * @return x and y of the remaining points, the given arrays if nothing can be removed
+     */
+    public static double[][] decimate( double[] x, double[] y, int buckets )
+    {
+        if ( x == null || y == null )
+        {
+            return new double[][] { x, y };
+        }
+        int n = x.length;
+        double bucketWidth = n == 0 ? 0 : (x[n - 1] - x[0]) / Math.max( 1, buckets );
+        if ( buckets < 1 || n <= buckets * 4 || bucketWidth <= 0 )
+        {
+            return new double[][] { x, y.length == n ? y : Arrays.copyOf( y, n ) };
+        }
+        double start = x[0];
+
+        double[][] out = { new double[buckets * 4], new double[buckets * 4] };
+        int size = 0;
+
+        int i = 0;
+        while ( i < n )
+        {
+            int bucket = Math.min( buckets - 1, (int) ((x[i] - start) / bucketWidth) );
+            double bucketEnd = bucket == buckets - 1 ? Double.POSITIVE_INFINITY : start + (bucket + 1) * bucketWidth;
+
+            int first = i;
+            int min = i;
+            int max = i;
+            double minY = valueAt( y, i );
+            double maxY = minY;
+            i++;
+            while ( i < n && x[i] < bucketEnd )
+            {
+                double value = valueAt( y, i );
+                if ( value < minY )
+                {
+                    min = i;
+                    minY = value;
+                }
+                if ( value > maxY )
+                {
+                    max = i;
+                    maxY = value;
+                }
+                i++;
+            }
+            int last = i - 1;
+
+            //emit in index order, skipping duplicates
+            int low = Math.min( min, max );
+            int high = Math.max( min, max );
+            size = append( out, size, x, y, first );
+            if ( low != first )
+            {
+                size = append( out, size, x, y, low );
+            }
+            if ( high != low && high != first )
+            {
+                size = append( out, size, x, y, high );
+            }
+            if ( last != high && last != low && last != first )
+            {
+                size = append( out, size, x, y, last );
+            }
+        }
+
+        return new double[][] { Arrays.copyOf( out[0], size ), Arrays.copyOf( out[1], size ) };
+    }
+
+    private static int append( double[][] out, int size, double[] x, double[] y, int index )
+    {
+        if ( size == out[0].length ) //only if rounding splits a bucket
+        {
+            out[0] = Arrays.copyOf( out[0], size * 2 );
+            out[1] = Arrays.copyOf( out[1], size * 2 );
+        }
+        out[0][size] = x[index];
+        out[1][size] = valueAt( y, index );
+        return size + 1;
+    }
+
+    private static double valueAt( double[] y, int index )
+    {
+        return index < y.length ? y[index] : 0.0;
+    }
+}
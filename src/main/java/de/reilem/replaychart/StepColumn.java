@@ -0,0 +1,129 @@
+package de.reilem.replaychart;
+
+import java.util.Arrays;
+
+/**
+ * Stores a channel as step function, only the index and value of each change is kept.
+ * Throttle and brake only change a few times per run and keyboard steering a few times per second,
+ * so this needs a fraction of the memory of {@link DoubleColumn}. Arrays are only expanded on demand.
+ */
+public final class StepColumn implements ReplayChannel
+{
+    private int[]    runStarts = new int[8];
+    private double[] runValues = new double[8];
+    private int      runs      = 0;
+    private int      size      = 0;
+
+    @Override public void add( double d )
+    {
+        add( d, 1 );
+    }
+
+    @Override public void add( double d, int count )
+    {
+        if ( count <= 0 )
+        {
+            return;
+        }
+        if ( runs == 0 || Double.doubleToLongBits( runValues[runs - 1] ) != Double.doubleToLongBits( d ) ) //value changed
+        {
+            if ( runs == runStarts.length )
+            {
+                runStarts = Arrays.copyOf( runStarts, runs * 2 );
+                runValues = Arrays.copyOf( runValues, runs * 2 );
+            }
+            runStarts[runs] = size;
+            runValues[runs] = d;
+            runs++;
+        }
+        size += count;
+    }
+
+    @Override public double get( int index )
+    {
+        if ( index < 0 || index >= size )
+        {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+        }
+        return runValues[findRun( index )];
+    }
+
+    @Override public int size()
+    {
+        return size;
+    }
+
+    @Override public int countNonZero()
+    {
+        int count = 0;
+        for ( int i = 0; i < runs; i++ )
+        {
+            if ( runValues[i] != 0.0 )
+            {
+                count += getRunLength( i );
+            }
+        }
+        return count;
+    }
+
+    @Override public void forEachRun( RunConsumer consumer )
+    {
+        for ( int i = 0; i < runs; i++ )
+        {
+            consumer.accept( runValues[i], getRunLength( i ) );
+        }
+    }
+
+    @Override public int runEnd( int index )
+    {
+        int run = findRun( index );
+        return run + 1 < runs ? runStarts[run + 1] : size;
+    }
+
+    /**
+     * expands the runs to one value per 10ms, a new array is created on every call
+     *
+     * @return
+     */
+    @Override public double[] toArray()
+    {
+        double[] array = new double[size];
+        for ( int i = 0; i < runs; i++ )
+        {
+            Arrays.fill( array, runStarts[i], runStarts[i] + getRunLength( i ), runValues[i] );
+        }
+        return array;
+    }
+
+    public int getRunCount()
+    {
+        return runs;
+    }
+
+    public int getRunStart( int run )
+    {
+        return runStarts[run];
+    }
+
+    public int getRunLength( int run )
+    {
+        return (run + 1 < runs ? runStarts[run + 1] : size) - runStarts[run];
+    }
+
+    public double getRunValue( int run )
+    {
+        return runValues[run];
+    }
+
+    /**
+     * finds the run containing the given index
+     *
+     * @param index
+     * @return
+     */
+    public int findRun( int index )
+    {
+        int run = Arrays.binarySearch( runStarts, 0, runs, index );
+        return run >= 0 ? run : -run - 2;
+    }
+}
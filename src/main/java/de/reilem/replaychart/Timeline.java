@@ -0,0 +1,60 @@
+package de.reilem.replaychart;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared x-axis arrays with one timestamp every 10ms.
+ * Arrays of the same length are only created once, they are shared by all replays and must not be modified.
+ */
+public final class Timeline
+{
+    private static final long MAX_CACHED_TIMESTAMPS = 1 << 22; //32MB, about 70 ten minute runs
+
+    private static final Map<Integer, double[]> CACHE = new LinkedHashMap<>( 16, 0.75f, true );
+    private static long cachedTimestamps = 0;
+
+    private Timeline()
+    {
+    }
+
+    /**
+     * @param time in ms
+     * @return amount of 10ms timestamps needed to cover the given time
+     */
+    public static int length( int time )
+    {
+        return Math.max( 0, (time + 9) / 10 );
+    }
+
+    /**
+     * @param length
+     * @return shared array 0, 10, 20, ... with the given length
+     */
+    public static synchronized double[] of( int length )
+    {
+        double[] timestamps = CACHE.get( length );
+        if ( timestamps != null )
+        {
+            return timestamps;
+        }
+
+        timestamps = new double[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            timestamps[i] = i * 10;
+        }
+        CACHE.put( length, timestamps );
+        cachedTimestamps += length;
+
+        //drop the least recently used arrays, charts still holding them are not affected
+        Iterator<double[]> eldest = CACHE.values().iterator();
+        while ( cachedTimestamps > MAX_CACHED_TIMESTAMPS && CACHE.size() > 1 )
+        {
+            cachedTimestamps -= eldest.next().length;
+            eldest.remove();
+        }
+        return timestamps;
+    }
+}
@@ -0,0 +1,36 @@
+package de.reilem.replaychart.archive;
+
+import de.reilem.replaychart.ReplayData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Archive mode of the command line, no window is opened
+ */
+public final class ArchiveCommand
+{
+    private ArchiveCommand()
+    {
+    }
+
+    /**
+     * packs the given replays into a single archive, which can be opened instead of the replays
+     *
+     * @param replays
+     * @param file
+     */
+    public static void writeArchive( List<ReplayData> replays, File file )
+    {
+        try
+        {
+            ReplayArchiveWriter.write( file.toPath(), replays );
+            System.out.println( "Wrote " + replays.size() + " replays to " + file.getAbsolutePath() );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Failed to write archive: " + e.getMessage() );
+        }
+    }
+}
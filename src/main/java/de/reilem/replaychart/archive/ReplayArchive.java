@@ -0,0 +1,287 @@
+package de.reilem.replaychart.archive;
+
+import de.reilem.replaychart.E_ChannelStorage;
+import de.reilem.replaychart.E_InputChannel;
+import de.reilem.replaychart.E_SteeringType;
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single file holding many parsed replays, e.g. a whole season for sharing with a coach.
+ * The file starts with a header pointing to a metadata table behind the replays, every replay is a block of varint encoded channel runs.
+ * The file is memory-mapped and a replay is only decoded when it is requested, requests may come from several threads.
+ */
+public final class ReplayArchive
+{
+    public static final String EXTENSION = ".rca";
+
+    static final int MAGIC            = 0x52434131; //RCA1
+    static final int ARCHIVE_VERSION  = 2;
+    static final int HEADER_SIZE      = 4 + 4 + 4 + 8; //magic, version, count, table offset
+    static final int TABLE_ENTRY_SIZE = 8 + 4 + 4 + 1 + 1 + 4 + 4 + 4; //offset, length, time, version, type, keyboard, pad, name length
+
+    private static final char ENTRY_SEPARATOR = '#';
+
+    private final ByteBuffer buffer;
+    private final long[]     offsets;
+    private final int[]      lengths;
+    private final int[]      replayTimes;
+    private final byte[]     tmVersions;
+    private final byte[]     types;
+    private final int[]      keyboardSteers;
+    private final int[]      padSteers;
+    private final String[]   names;
+
+    private ReplayArchive( ByteBuffer buffer, int count )
+    {
+        this.buffer = buffer;
+        offsets = new long[count];
+        lengths = new int[count];
+        replayTimes = new int[count];
+        tmVersions = new byte[count];
+        types = new byte[count];
+        keyboardSteers = new int[count];
+        padSteers = new int[count];
+        names = new String[count];
+    }
+
+    /**
+     * maps the archive and reads its table, the replays are not decoded yet
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file is no archive or its table points outside of the file
+     */
+    public static ReplayArchive open( Path file ) throws IOException
+    {
+        ByteBuffer buffer;
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            if ( channel.size() > Integer.MAX_VALUE )
+            {
+                throw new IOException( "Archive is larger than 2GB: " + file );
+            }
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        if ( buffer.limit() < HEADER_SIZE || buffer.getInt( 0 ) != MAGIC )
+        {
+            throw new IOException( "Not a replay archive: " + file );
+        }
+        if ( buffer.getInt( 4 ) != ARCHIVE_VERSION )
+        {
+            throw new IOException( "Unsupported archive version " + buffer.getInt( 4 ) + ": " + file );
+        }
+
+        int count = buffer.getInt( 8 );
+        long tableOffset = buffer.getLong( 12 );
+        if ( tableOffset < HEADER_SIZE || tableOffset > buffer.limit() || count < 0 || count > (buffer.limit() - tableOffset) / TABLE_ENTRY_SIZE )
+        {
+            throw new IOException( "Corrupt archive table: " + file );
+        }
+
+        ReplayArchive archive = new ReplayArchive( buffer, count );
+        ByteBuffer table = buffer.duplicate();
+        table.position( (int) tableOffset );
+        for ( int i = 0; i < archive.size(); i++ )
+        {
+            if ( table.remaining() < TABLE_ENTRY_SIZE ) //names of the previous entries took the space
+            {
+                throw new IOException( "Corrupt archive table: " + file );
+            }
+            archive.offsets[i] = table.getLong();
+            archive.lengths[i] = table.getInt();
+            archive.replayTimes[i] = table.getInt();
+            archive.tmVersions[i] = table.get();
+            archive.types[i] = table.get();
+            archive.keyboardSteers[i] = table.getInt();
+            archive.padSteers[i] = table.getInt();
+            int nameLength = table.getInt();
+            //replays lie between the header and the table
+            if ( archive.offsets[i] < HEADER_SIZE || archive.lengths[i] < 0 || archive.offsets[i] + archive.lengths[i] > tableOffset
+                    || archive.tmVersions[i] >= E_TmVersion.values().length || archive.types[i] >= E_SteeringType.values().length
+                    || nameLength > table.remaining() )
+            {
+                throw new IOException( "Corrupt archive entry " + i + ": " + file );
+            }
+            if ( nameLength >= 0 )
+            {
+                byte[] name = new byte[nameLength];
+                table.get( name );
+                archive.names[i] = new String( name, StandardCharsets.UTF_8 );
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * @param file
+     * @return true if the file name has the archive extension
+     */
+    public static boolean isArchive( String file )
+    {
+        return file.toLowerCase().endsWith( EXTENSION );
+    }
+
+    /**
+     * @param archive
+     * @param index
+     * @return path addressing a single replay of the archive
+     */
+    public static String entryPath( String archive, int index )
+    {
+        return archive + ENTRY_SEPARATOR + index;
+    }
+
+    /**
+     * @param path
+     * @return archive file of an entry path, null if the path is no entry
+     */
+    public static String entryArchive( String path )
+    {
+        int separator = path.lastIndexOf( ENTRY_SEPARATOR );
+        return separator > 0 && isArchive( path.substring( 0, separator ) ) ? path.substring( 0, separator ) : null;
+    }
+
+    /**
+     * @param path entry path
+     * @return index of the replay in its archive
+     */
+    public static int entryIndex( String path )
+    {
+        return Integer.parseInt( path.substring( path.lastIndexOf( ENTRY_SEPARATOR ) + 1 ) );
+    }
+
+    public int size()
+    {
+        return offsets.length;
+    }
+
+    public String getName( int index )
+    {
+        return names[index];
+    }
+
+    /**
+     * @param index
+     * @return in ms
+     */
+    public int getReplayTime( int index )
+    {
+        return replayTimes[index];
+    }
+
+    public E_TmVersion getTmVersion( int index )
+    {
+        return tmVersions[index] < 0 ? null : E_TmVersion.values()[tmVersions[index]];
+    }
+
+    /**
+     * decodes a single replay
+     *
+     * @param index
+     * @return a new replay on every call
+     */
+    public ReplayData get( int index )
+    {
+        Profiler.start( E_Stage.ARCHIVE );
+        ByteBuffer block = buffer.duplicate();
+        block.position( (int) offsets[index] );
+        block.limit( (int) offsets[index] + lengths[index] );
+
+        ReplayData replay = new ReplayData( E_ChannelStorage.forSteering( padSteers[index] > 0 ), E_ChannelStorage.EVENTS );
+        replay.setFileName( names[index] );
+        replay.setReplayTime( replayTimes[index] );
+        replay.setTmVersion( getTmVersion( index ) );
+        replay.setType( types[index] < 0 ? null : E_SteeringType.values()[types[index]] );
+        replay.setKeyboardSteers( keyboardSteers[index] );
+        replay.setPadSteers( padSteers[index] );
+
+        int respawnCount = readVarInt( block );
+        int respawn = 0;
+        for ( int i = 0; i < respawnCount; i++ )
+        {
+            respawn += (int) unZigZag( readVarLong( block ) );
+            replay.addRespawn( respawn );
+        }
+        for ( E_InputChannel c : E_InputChannel.values() )
+        {
+            readChannel( block, replay, c );
+        }
+        Profiler.stop( E_Stage.ARCHIVE, lengths[index] );
+        return replay;
+    }
+
+    /**
+     * decodes all replays in file order, which reads the archive sequentially
+     *
+     * @return
+     */
+    public List<ReplayData> getAll()
+    {
+        List<ReplayData> replays = new ArrayList<>( size() );
+        for ( int i = 0; i < size(); i++ )
+        {
+            replays.add( get( i ) );
+        }
+        return replays;
+    }
+
+    private static void readChannel( ByteBuffer block, ReplayData replay, E_InputChannel c )
+    {
+        readVarInt( block ); //size, equals the sum of the run lengths
+        int runs = readVarInt( block );
+        long lastValue = 0;
+        for ( int i = 0; i < runs; i++ )
+        {
+            int length = readVarInt( block );
+            long tag = readVarLong( block );
+            double value;
+            if ( (tag & 1) == 0 )
+            {
+                lastValue += unZigZag( tag >>> 1 );
+                value = lastValue;
+            }
+            else
+            {
+                value = Double.longBitsToDouble( block.getLong() );
+            }
+            replay.addRun( c, value, length );
+        }
+    }
+
+    private static long unZigZag( long value )
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readVarInt( ByteBuffer in )
+    {
+        return (int) readVarLong( in );
+    }
+
+    private static long readVarLong( ByteBuffer in )
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ( b < 0 );
+        return value;
+    }
+}
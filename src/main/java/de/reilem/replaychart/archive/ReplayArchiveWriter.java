@@ -0,0 +1,187 @@
+package de.reilem.replaychart.archive;
+
+import de.reilem.replaychart.E_InputChannel;
+import de.reilem.replaychart.ReplayData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes replays into a {@link ReplayArchive} in one pass: every replay is encoded and appended as soon as it is added,
+ * the metadata table is written behind the last replay on close.
+ */
+public final class ReplayArchiveWriter implements Closeable
+{
+    private final FileChannel           channel;
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream( 4096 );
+    private final List<byte[]>          table = new ArrayList<>();
+
+    private long position = ReplayArchive.HEADER_SIZE;
+
+    public ReplayArchiveWriter( Path file ) throws IOException
+    {
+        channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+    }
+
+    /**
+     * writes all replays into the given file
+     *
+     * @param file
+     * @param replays
+     * @throws IOException
+     */
+    public static void write( Path file, List<ReplayData> replays ) throws IOException
+    {
+        try ( ReplayArchiveWriter writer = new ReplayArchiveWriter( file ) )
+        {
+            for ( ReplayData replay : replays )
+            {
+                writer.add( replay );
+            }
+        }
+    }
+
+    /**
+     * encodes the replay: respawns and channels as varints, respawn times and channel values as deltas to their predecessor
+     *
+     * @param replay
+     * @throws IOException
+     */
+    public void add( ReplayData replay ) throws IOException
+    {
+        block.reset();
+        writeVarInt( block, replay.getRespawns().size() );
+        int lastRespawn = 0;
+        for ( int respawn : replay.getRespawns() )
+        {
+            writeVarLong( block, zigZag( respawn - lastRespawn ) );
+            lastRespawn = respawn;
+        }
+        for ( E_InputChannel c : E_InputChannel.values() )
+        {
+            writeChannel( replay, c );
+        }
+
+        byte[] bytes = block.toByteArray();
+        writeFully( ByteBuffer.wrap( bytes ), position );
+        table.add( tableEntry( replay, position, bytes.length ) );
+        position += bytes.length;
+    }
+
+    /**
+     * writes the table and the header, the archive is complete afterwards
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            long tableOffset = position;
+            for ( byte[] entry : table )
+            {
+                writeFully( ByteBuffer.wrap( entry ), position );
+                position += entry.length;
+            }
+            ByteBuffer header = ByteBuffer.allocate( ReplayArchive.HEADER_SIZE );
+            header.putInt( ReplayArchive.MAGIC ).putInt( ReplayArchive.ARCHIVE_VERSION ).putInt( table.size() ).putLong( tableOffset ).flip();
+            writeFully( header, 0 );
+            channel.truncate( position );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * channel as runs: size, run count, then length and value delta of every run.
+     * Integral values are stored as zigzag delta shifted by one, other values are marked by 1 and stored as raw double
+     */
+    private void writeChannel( ReplayData replay, E_InputChannel c )
+    {
+        writeVarInt( block, replay.getChannel( c ).size() );
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int[] runCount = { 0 };
+        long[] lastValue = { 0 };
+        replay.getChannel( c ).forEachRun( ( value, length ) ->
+        {
+            writeVarInt( runs, length );
+            long integral = (long) value;
+            if ( Double.doubleToRawLongBits( integral ) == Double.doubleToRawLongBits( value ) && Math.abs( integral ) < (1L << 60) ) //not -0.0
+            {
+                writeVarLong( runs, zigZag( integral - lastValue[0] ) << 1 );
+                lastValue[0] = integral;
+            }
+            else
+            {
+                writeVarLong( runs, 1 );
+                long bits = Double.doubleToRawLongBits( value );
+                for ( int i = 7; i >= 0; i-- )
+                {
+                    runs.write( (int) (bits >>> (i * 8)) );
+                }
+            }
+            runCount[0]++;
+        } );
+        writeVarInt( block, runCount[0] );
+        byte[] bytes = runs.toByteArray();
+        block.write( bytes, 0, bytes.length );
+    }
+
+    private static byte[] tableEntry( ReplayData replay, long offset, int length )
+    {
+        byte[] name = replay.getChartTitle() == null ? null : replay.getChartTitle().getBytes( StandardCharsets.UTF_8 );
+        ByteBuffer entry = ByteBuffer.allocate( ReplayArchive.TABLE_ENTRY_SIZE + (name == null ? 0 : name.length) );
+        entry.putLong( offset );
+        entry.putInt( length );
+        entry.putInt( replay.getReplayTime() );
+        entry.put( (byte) (replay.getTmVersion() == null ? -1 : replay.getTmVersion().ordinal()) );
+        entry.put( (byte) (replay.getSteeringType() == null ? -1 : replay.getSteeringType().ordinal()) );
+        entry.putInt( replay.getKeyboardSteers() );
+        entry.putInt( replay.getPadSteers() );
+        entry.putInt( name == null ? -1 : name.length );
+        if ( name != null )
+        {
+            entry.put( name );
+        }
+        return entry.array();
+    }
+
+    private void writeFully( ByteBuffer buffer, long at ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            at += channel.write( buffer, at );
+        }
+    }
+
+    private static long zigZag( long value )
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarInt( ByteArrayOutputStream out, int value )
+    {
+        writeVarLong( out, value & 0xFFFFFFFFL );
+    }
+
+    private static void writeVarLong( ByteArrayOutputStream out, long value )
+    {
+        while ( (value & ~0x7FL) != 0 )
+        {
+            out.write( (int) ((value & 0x7F) | 0x80) );
+            value >>>= 7;
+        }
+        out.write( (int) value );
+    }
+}
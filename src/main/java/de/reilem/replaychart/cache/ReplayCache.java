@@ -0,0 +1,318 @@
+package de.reilem.replaychart.cache;
+
+import de.reilem.replaychart.ReplayData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Caches parsed replays on disk, one file per replay.
+ * An entry is only used if path, size, modification time and content checksum of the replay still match
+ * and it was written by the same cache version. The least recently used entries are evicted once the cache
+ * grows above its size limit.
+ */
+public final class ReplayCache
+{
+    /**
+     * increase whenever the parsers or the format of {@link ReplayData#write(DataOutputStream)} change
+     */
+    public static final int CACHE_VERSION = 2;
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final int    MAGIC     = 0x52434331; //RCC1
+    private static final String EXTENSION = ".rcache";
+
+    private static volatile ReplayCache defaultCache;
+
+    private final Path       directory;
+    private final long       maxSize;
+    private final AtomicLong currentSize = new AtomicLong( -1 );
+
+    public ReplayCache( Path directory, long maxSize )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache used by the parsers or null if caching is disabled
+     */
+    public static ReplayCache getDefault()
+    {
+        return defaultCache;
+    }
+
+    public static void setDefault( ReplayCache cache )
+    {
+        defaultCache = cache;
+    }
+
+    /**
+     * @return cache in the users home folder
+     */
+    public static ReplayCache inUserHome()
+    {
+        return new ReplayCache( Paths.get( System.getProperty( "user.home" ), ".replaychart", "cache" ), DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * looks up the parsed replay for the given file
+     *
+     * @param file    replay file
+     * @param content bytes of the replay file
+     * @param variant parser options that change the result
+     * @return cached replay or null
+     */
+    public ReplayData get( String file, byte[] content, String variant )
+    {
+        return get( file, content, content.length, variant );
+    }
+
+    /**
+     * looks up the parsed replay for the given file
+     *
+     * @param file    replay file
+     * @param content bytes of the replay file, starting at 0
+     * @param length  size of the replay file
+     * @param variant parser options that change the result
+     * @return cached replay or null
+     */
+    public ReplayData get( String file, byte[] content, int length, String variant )
+    {
+        Path entry = entryPath( file, variant );
+        if ( !Files.isRegularFile( entry ) )
+        {
+            return null;
+        }
+
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( entry ) ) ) )
+        {
+            if ( in.readInt() != MAGIC || in.readInt() != CACHE_VERSION || !in.readUTF().equals( variant ) )
+            {
+                return null;
+            }
+            if ( in.readLong() != length || in.readLong() != lastModified( file ) || in.readLong() != checksum( content, length ) )
+            {
+                return null;
+            }
+            ReplayData replay = ReplayData.read( in );
+            Files.setLastModifiedTime( entry, FileTime.fromMillis( System.currentTimeMillis() ) ); //mark as recently used
+            return replay;
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            return null; //broken entry, will be overwritten
+        }
+    }
+
+    /**
+     * stores the parsed replay of the given file
+     *
+     * @param file    replay file
+     * @param content bytes of the replay file
+     * @param variant parser options that change the result
+     * @param replay
+     */
+    public void put( String file, byte[] content, String variant, ReplayData replay )
+    {
+        put( file, content, content.length, variant, replay );
+    }
+
+    /**
+     * stores the parsed replay of the given file
+     *
+     * @param file    replay file
+     * @param content bytes of the replay file, starting at 0
+     * @param length  size of the replay file
+     * @param variant parser options that change the result
+     * @param replay
+     */
+    public void put( String file, byte[] content, int length, String variant, ReplayData replay )
+    {
+        Path temp = null;
+        try
+        {
+            Files.createDirectories( directory );
+            Path entry = entryPath( file, variant );
+            temp = Files.createTempFile( directory, "entry", ".tmp" );
+
+            try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) )
+            {
+                out.writeInt( MAGIC );
+                out.writeInt( CACHE_VERSION );
+                out.writeUTF( variant );
+                out.writeLong( length );
+                out.writeLong( lastModified( file ) );
+                out.writeLong( checksum( content, length ) );
+                replay.write( out );
+            }
+
+            long oldSize = Files.isRegularFile( entry ) ? Files.size( entry ) : 0;
+            long newSize = Files.size( temp );
+            Files.move( temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            temp = null; //moved, nothing to clean up
+
+            if ( addToSize( newSize - oldSize ) > maxSize )
+            {
+                evict();
+            }
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Unable to cache replay " + file + ": " + e );
+        }
+        finally
+        {
+            deleteTemp( temp );
+        }
+    }
+
+    /**
+     * removes an unfinished entry, it would never be counted or evicted otherwise
+     */
+    private static void deleteTemp( Path temp )
+    {
+        if ( temp == null )
+        {
+            return;
+        }
+        try
+        {
+            Files.deleteIfExists( temp );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Unable to delete " + temp + ": " + e );
+        }
+    }
+
+    /**
+     * removes all entries
+     *
+     * @throws IOException
+     */
+    public synchronized void clear() throws IOException
+    {
+        for ( Path entry : listEntries() )
+        {
+            Files.deleteIfExists( entry );
+        }
+        currentSize.set( 0 );
+    }
+
+    private long addToSize( long delta ) throws IOException
+    {
+        if ( currentSize.get() < 0 )
+        {
+            synchronized ( this )
+            {
+                if ( currentSize.get() < 0 ) //sum up the existing entries once
+                {
+                    long size = 0;
+                    for ( Path entry : listEntries() )
+                    {
+                        size += Files.size( entry );
+                    }
+                    currentSize.set( size );
+                    return size;
+                }
+            }
+        }
+        return currentSize.addAndGet( delta );
+    }
+
+    /**
+     * deletes the least recently used entries until the cache is below 90% of its maximum size
+     *
+     * @throws IOException
+     */
+    private synchronized void evict() throws IOException
+    {
+        List<Path> entries = listEntries();
+        List<FileTime> usedTimes = new ArrayList<>( entries.size() );
+        long size = 0;
+        for ( Path entry : entries )
+        {
+            usedTimes.add( Files.getLastModifiedTime( entry ) );
+            size += Files.size( entry );
+        }
+
+        List<Integer> order = new ArrayList<>( entries.size() );
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            order.add( i );
+        }
+        order.sort( Comparator.comparing( usedTimes::get ) );
+
+        long target = maxSize / 10 * 9;
+        for ( int i : order )
+        {
+            if ( size <= target )
+            {
+                break;
+            }
+            long entrySize = Files.size( entries.get( i ) );
+            if ( Files.deleteIfExists( entries.get( i ) ) )
+            {
+                size -= entrySize;
+            }
+        }
+        currentSize.set( size );
+    }
+
+    private List<Path> listEntries() throws IOException
+    {
+        List<Path> entries = new ArrayList<>();
+        if ( !Files.isDirectory( directory ) )
+        {
+            return entries;
+        }
+        try ( Stream<Path> files = Files.list( directory ) )
+        {
+            files.filter( p -> p.getFileName().toString().endsWith( EXTENSION ) ).forEach( entries::add );
+        }
+        return entries;
+    }
+
+    private Path entryPath( String file, String variant )
+    {
+        String key = variant + "|" + Paths.get( file ).toAbsolutePath().normalize();
+        try
+        {
+            byte[] hash = MessageDigest.getInstance( "SHA-1" ).digest( key.getBytes( StandardCharsets.UTF_8 ) );
+            StringBuilder name = new StringBuilder();
+            for ( byte b : hash )
+            {
+                name.append( Character.forDigit( (b >> 4) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+            }
+            return directory.resolve( name + EXTENSION );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e ); //every jvm has to support sha-1
+        }
+    }
+
+    private static long lastModified( String file ) throws IOException
+    {
+        return Files.getLastModifiedTime( Paths.get( file ) ).toMillis();
+    }
+
+    private static long checksum( byte[] content, int length )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( content, 0, length );
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,56 @@
+package de.reilem.replaychart.diff;
+
+import de.reilem.replaychart.ReplayChart;
+import de.reilem.replaychart.ReplayData;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Diff mode of the command line, no window is opened
+ */
+public final class DiffCommand
+{
+    private DiffCommand()
+    {
+    }
+
+    /**
+     * compares all given replays to the fastest one and prints where each of them diverged first
+     *
+     * @param replays
+     * @param workerCount
+     */
+    public static void diffReplays( List<ReplayData> replays, int workerCount )
+    {
+        if ( replays.isEmpty() )
+        {
+            System.out.println( "No replays to compare." );
+            return;
+        }
+        replays.sort( Comparator.comparingInt( ReplayData::getReplayTime ) );
+        ReplayData reference = replays.get( 0 );
+
+        List<ReplayDiff> diffs;
+        try
+        {
+            diffs = new ReplayComparator( reference, ReplayComparator.DEFAULT_TOLERANCE, workerCount ).compareAll( replays.subList( 1, replays.size() ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        System.out.println( String.format( "%-12s %-12s %-13s %-8s %s", "Time", "Divergence", "Channel", "Windows", "Replay" ) );
+        System.out.println( String.format( "%-12s %-12s %-13s %-8s %s (reference)",
+                ReplayChart.formatTime( (double) reference.getReplayTime(), reference.getTmVersion() ), "-", "-", "-", reference.getChartTitle() ) );
+        for ( ReplayDiff diff : diffs )
+        {
+            ReplayData r = diff.getCandidate();
+            System.out.println( String.format( "%-12s %-12s %-13s %-8d %s", ReplayChart.formatTime( (double) r.getReplayTime(), r.getTmVersion() ),
+                    diff.isMatching() ? "-" : diff.getFirstDivergence() + "ms",
+                    diff.isMatching() ? "-" : diff.getFirstDivergenceChannel().name().toLowerCase(), diff.getWindows().size(), r.getChartTitle() ) );
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package de.reilem.replaychart.diff;
+
+import de.reilem.replaychart.E_InputChannel;
+import de.reilem.replaychart.ReplayChannel;
+import de.reilem.replaychart.ReplayData;
+import de.reilem.replaychart.gbx.GbxSteeringInput;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares replays to a reference replay, usually the fastest one.
+ * The channels are walked run by run: both replays are only compared where one of them changes,
+ * so a replay stored as {@link de.reilem.replaychart.StepColumn} is compared in the amount of its input events, not its length.
+ */
+public final class ReplayComparator
+{
+    public static final double DEFAULT_TOLERANCE = 0.1;
+
+    private final ReplayData reference;
+    private final double     tolerance;
+    private final int        workerCount;
+
+    /**
+     * @param reference
+     * @param tolerance allowed difference as share of a full input, 0-1
+     * @param workerCount amount of replays compared at the same time
+     */
+    public ReplayComparator( ReplayData reference, double tolerance, int workerCount )
+    {
+        if ( tolerance < 0 || workerCount < 1 )
+        {
+            throw new IllegalArgumentException( "Tolerance must not be negative and worker count must be positive!" );
+        }
+        this.reference = reference;
+        this.tolerance = tolerance * GbxSteeringInput.MAX;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * @param candidate
+     * @return the windows in which the candidate differs from the reference
+     */
+    public ReplayDiff compare( ReplayData candidate )
+    {
+        List<ReplayDiff.Window> windows = new ArrayList<>();
+        for ( E_InputChannel channel : E_InputChannel.values() )
+        {
+            addWindows( windows, channel, reference.getChannel( channel ), candidate.getChannel( channel ) );
+        }
+        windows.sort( Comparator.comparingInt( ReplayDiff.Window::getStart ) );
+        return new ReplayDiff( reference, candidate, windows );
+    }
+
+    /**
+     * compares all candidates on a fixed pool of workers
+     *
+     * @param candidates
+     * @return diffs in the order of the given candidates
+     * @throws InterruptedException
+     */
+    public List<ReplayDiff> compareAll( List<ReplayData> candidates ) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( workerCount, Math.max( 1, candidates.size() ) ) );
+        try
+        {
+            List<Callable<ReplayDiff>> tasks = new ArrayList<>();
+            candidates.forEach( c -> tasks.add( () -> compare( c ) ) );
+
+            List<ReplayDiff> diffs = new ArrayList<>( candidates.size() );
+            for ( Future<ReplayDiff> future : executor.invokeAll( tasks ) )
+            {
+                diffs.add( future.get() );
+            }
+            return diffs;
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( "Unable to compare replays!", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * merges the runs of both channels and collects the ranges that differ more than the tolerance
+     */
+    private void addWindows( List<ReplayDiff.Window> windows, E_InputChannel channel, ReplayChannel ref, ReplayChannel cand )
+    {
+        int length = Math.min( ref.size(), cand.size() );
+        int windowStart = -1;
+        double maxDelta = 0.0;
+
+        int i = 0;
+        while ( i < length )
+        {
+            int end = Math.min( length, Math.min( ref.runEnd( i ), cand.runEnd( i ) ) ); //both values are constant until here
+            double delta = cand.get( i ) - ref.get( i );
+            if ( Math.abs( delta ) > tolerance )
+            {
+                if ( windowStart < 0 )
+                {
+                    windowStart = i;
+                    maxDelta = delta;
+                }
+                else if ( Math.abs( delta ) > Math.abs( maxDelta ) )
+                {
+                    maxDelta = delta;
+                }
+            }
+            else if ( windowStart >= 0 )
+            {
+                windows.add( new ReplayDiff.Window( channel, windowStart * 10, i * 10, maxDelta ) );
+                windowStart = -1;
+            }
+            i = end;
+        }
+        if ( windowStart >= 0 )
+        {
+            windows.add( new ReplayDiff.Window( channel, windowStart * 10, length * 10, maxDelta ) );
+        }
+    }
+}
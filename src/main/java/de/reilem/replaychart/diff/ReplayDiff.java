@@ -0,0 +1,133 @@
+package de.reilem.replaychart.diff;
+
+import de.reilem.replaychart.E_InputChannel;
+import de.reilem.replaychart.ReplayChannel;
+import de.reilem.replaychart.ReplayData;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Differences of one replay to a reference replay
+ */
+public final class ReplayDiff
+{
+    /**
+     * time range in which one channel differs from the reference by more than the tolerance
+     */
+    public static final class Window
+    {
+        private final E_InputChannel channel;
+        private final int            start;
+        private final int            end;
+        private final double         maxDelta;
+
+        Window( E_InputChannel channel, int start, int end, double maxDelta )
+        {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.maxDelta = maxDelta;
+        }
+
+        public E_InputChannel getChannel()
+        {
+            return channel;
+        }
+
+        /**
+         * @return in ms
+         */
+        public int getStart()
+        {
+            return start;
+        }
+
+        /**
+         * @return in ms, exclusive
+         */
+        public int getEnd()
+        {
+            return end;
+        }
+
+        /**
+         * @return largest difference candidate - reference in the window, keeps its sign
+         */
+        public double getMaxDelta()
+        {
+            return maxDelta;
+        }
+    }
+
+    private final ReplayData   reference;
+    private final ReplayData   candidate;
+    private final List<Window> windows;
+
+    ReplayDiff( ReplayData reference, ReplayData candidate, List<Window> windows )
+    {
+        this.reference = reference;
+        this.candidate = candidate;
+        this.windows = Collections.unmodifiableList( windows );
+    }
+
+    public ReplayData getReference()
+    {
+        return reference;
+    }
+
+    public ReplayData getCandidate()
+    {
+        return candidate;
+    }
+
+    /**
+     * @return all windows sorted by start
+     */
+    public List<Window> getWindows()
+    {
+        return windows;
+    }
+
+    /**
+     * @return true if no channel differs within the length of both replays
+     */
+    public boolean isMatching()
+    {
+        return windows.isEmpty();
+    }
+
+    /**
+     * @return in ms, -1 if the replays don't diverge
+     */
+    public int getFirstDivergence()
+    {
+        return windows.isEmpty() ? -1 : windows.get( 0 ).getStart();
+    }
+
+    /**
+     * @return channel that diverged first, null if the replays don't diverge
+     */
+    public E_InputChannel getFirstDivergenceChannel()
+    {
+        return windows.isEmpty() ? null : windows.get( 0 ).getChannel();
+    }
+
+    /**
+     * expands the difference candidate - reference of a channel to one value per 10ms, a new array is created on every call
+     *
+     * @param channel
+     * @return covers the length both replays have in common
+     */
+    public double[] getDelta( E_InputChannel channel )
+    {
+        ReplayChannel ref = reference.getChannel( channel );
+        ReplayChannel cand = candidate.getChannel( channel );
+        double[] delta = new double[Math.min( ref.size(), cand.size() )];
+        for ( int i = 0; i < delta.length; i++ )
+        {
+            delta[i] = cand.get( i ) - ref.get( i );
+        }
+        return delta;
+    }
+}
@@ -1,309 +1,243 @@
 package de.reilem.replaychart.donadigo;
 
+import de.reilem.replaychart.E_ChannelStorage;
 import de.reilem.replaychart.E_SteeringType;
 import de.reilem.replaychart.ReplayData;
-import de.reilem.replaychart.SteeringAction;
+import de.reilem.replaychart.cache.ReplayCache;
 import de.reilem.replaychart.gbx.GbxSteeringInput;
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class DonadigoReplayBuilder
 {
+    private static final int ACCELERATION = 0;
+    private static final int BRAKE        = 1;
+    private static final int STEER_LEFT   = 2;
+    private static final int STEER_RIGHT  = 3;
+    private static final int PAD_STEERING = 4;
+
     /**
-     * read the given file line by line and extract timestamps and steering
+     * read the given file and extract timestamps and steering
      *
      * @param fileName
      * @return
+     * @throws IOException if the file can not be read or a line can not be parsed
      */
-    public static ReplayData buildReplay( String fileName, boolean overlaySteering )
+    public static ReplayData buildReplay( String fileName, boolean overlaySteering ) throws IOException
     {
-        ReplayData replayData = new ReplayData();
+        ReplayCache cache = ReplayCache.getDefault();
+        String cacheVariant = overlaySteering ? "donadigo-overlay" : "donadigo";
+        byte[] content = null;
+        Profiler.start( E_Stage.READ );
+        try
+        {
+            content = Files.readAllBytes( Paths.get( fileName ) );
+        }
+        finally
+        {
+            Profiler.stop( E_Stage.READ, content == null ? 0 : content.length );
+        }
 
-        List<String> accelerationList = new ArrayList<>();
-        List<String> brakeList = new ArrayList<>();
-        List<SteeringAction> steeringList = new ArrayList<>();
+        ReplayData cachedReplay = cache == null ? null : cache.get( fileName, content, cacheVariant );
+        if ( cachedReplay != null )
+        {
+            return cachedReplay;
+        }
 
-        int padSteeringCounter = 0;
-        int keyboardSteeringCounter = 0;
+        ReplayData replayData;
+        Profiler.start( E_Stage.SCRIPT );
+        try
+        {
+            DonadigoScript script = DonadigoScriptScanner.scan( content, content.length );
+            replayData = new ReplayData( E_ChannelStorage.forSteering( !script.padTimes.isEmpty() ), E_ChannelStorage.EVENTS );
+            build( script, overlaySteering, replayData );
+        }
+        finally
+        {
+            Profiler.stop( E_Stage.SCRIPT, content.length );
+        }
+
+        String separator = System.getProperty("file.separator");
+        String[] fileNameParts = fileName.split( separator );
+        replayData.setFileName( fileNameParts[fileNameParts.length - 1] );
 
-        File file = new File( fileName );
-        try ( BufferedReader br = new BufferedReader( new FileReader( file ) ) )
+        if ( cache != null )
         {
-            String line;
-            while ( (line = br.readLine()) != null )
+            cache.put( fileName, content, cacheVariant, replayData );
+        }
+        return replayData;
+    }
+
+    /**
+     * fills all channels in one pass over the time sorted inputs.
+     * Throttle and brake are pressed from start to end (exclusive), keys from start to end (inclusive).
+     * Pad steering is stronger than keyboard steering and left is stronger than right, as in the game.
+     *
+     * @param script
+     * @param overlaySteering don't fill acceleration and brake
+     * @param replayData
+     */
+    private static void build( DonadigoScript script, boolean overlaySteering, ReplayData replayData )
+    {
+        int replayTime = script.lastTime;
+        int ticks = (replayTime + 9) / 10;
+        replayData.setReplayTime( replayTime );
+        replayData.setType( script.padTimes.size() > script.keyStarts.size() ? E_SteeringType.DIGITAL : E_SteeringType.ANALOG );
+
+        //every event is encoded as tick << 32 | index, sorting keeps the file order of events in the same tick
+        EventList events = new EventList();
+        for ( int i = 0; i < script.padTimes.size(); i++ )
+        {
+            events.add( ceilTick( script.padTimes.get( i ) ), PAD_STEERING, script.padValues.get( i ) );
+        }
+        for ( int i = 0; i < script.keyStarts.size(); i++ )
+        {
+            int key = script.keyLeft.get( i ) == 1 ? STEER_LEFT : STEER_RIGHT;
+            events.add( ceilTick( script.keyStarts.get( i ) ), key, 1 );
+            events.add( script.keyEnds.get( i ) / 10 + 1, key, -1 );
+        }
+        if ( !overlaySteering ) // don't show acceleration and brake in overlay mode
+        {
+            if ( script.accelerationStarts.isEmpty() )
             {
-                String[] parts = line.split( " " );
+                events.add( 0, ACCELERATION, 1 ); //ESWC runs sometimes? don't have acceleration at all, assume it was pressed all the time
+            }
+            addRanges( events, ACCELERATION, script.accelerationStarts, script.accelerationEnds, replayTime );
+            addRanges( events, BRAKE, script.brakeStarts, script.brakeEnds, replayTime );
+        }
+        events.sort();
 
-                if ( isInteger( parts[0] ) ) //pad steering
-                {
-                    steeringList.add( new SteeringAction( parts[0], parts[2] ) );
-                    padSteeringCounter++;
-                }
-                else if ( parts[0].contains( "-" ) && (parts[2].equals( "left" ) || parts[2].equals( "right" )) ) //keyboard steering
-                {
-                    steeringList.add( new SteeringAction( parts[0], parts[2] ) );
-                    keyboardSteeringCounter++;
-                }
-                else if ( parts[2].equals( "up" ) ) //acceleration
+        int[] pressed = new int[4]; //amount of active ranges per key
+        double padSteering = 0.0;
+        int cursor = 0;
+        for ( int tick = 0; tick < ticks; tick++ )
+        {
+            while ( cursor < events.size() && events.getTick( cursor ) <= tick )
+            {
+                int type = events.getType( cursor );
+                if ( type == PAD_STEERING )
                 {
-                    accelerationList.add( parts[0] );
+                    padSteering = events.getValue( cursor );
                 }
-                else if ( parts[2].equals( "down" ) ) //brake
+                else
                 {
-                    brakeList.add( parts[0] );
+                    pressed[type] += events.getValue( cursor );
                 }
+                cursor++;
             }
 
-            calculateReplayLength( steeringList, accelerationList, brakeList, replayData );
-
-            for ( int i = 0; i < replayData.getReplayTime(); i = i + 10 ) //add a timestamp for the x-axis for every 10ms to please XChart
+            if ( !overlaySteering )
             {
-                replayData.addTimestamp( i );
+                replayData.addAcceleration( pressed[ACCELERATION] > 0 ? GbxSteeringInput.MAX : 0.0 );
+                replayData.addBrake( pressed[BRAKE] > 0 ? GbxSteeringInput.MIN : 0.0 );
             }
 
-            if ( padSteeringCounter != 0 && keyboardSteeringCounter != 0 )
+            if ( padSteering != 0.0 )
             {
-                System.err.println( "Mixed ( Pad + Keyboard ) runs are not supported yet!" );
-                return new ReplayData();
+                replayData.addSteering( padSteering );
+                replayData.addPadAction();
             }
-            else if ( padSteeringCounter > keyboardSteeringCounter )
+            else if ( pressed[STEER_LEFT] > 0 ) // keyboards can only fullsteer
             {
-                replayData.setType( E_SteeringType.DIGITAL );
-                extractPadSteering( steeringList, replayData );
+                replayData.addSteering( GbxSteeringInput.MIN );
+                replayData.addKeyboardAction();
             }
-            else
+            else if ( pressed[STEER_RIGHT] > 0 )
             {
-                replayData.setType( E_SteeringType.ANALOG );
-                extractKeyboardSteering( steeringList, replayData );
+                replayData.addSteering( GbxSteeringInput.MAX );
+                replayData.addKeyboardAction();
             }
-
-            if ( !overlaySteering ) // don't show acceleration and brake in overlay mode
+            else
             {
-                extractAccelerationOrBrake( true, accelerationList, replayData );
-                extractAccelerationOrBrake( false, brakeList, replayData );
+                replayData.addSteering( 0.0 );
             }
-
-
-            String separator = System.getProperty("file.separator");
-            String[] fileNameParts = fileName.split( separator );
-            replayData.setFileName( fileNameParts[fileNameParts.length - 1] );
-        }
-        catch ( Throwable e )
-        {
-            e.printStackTrace();
         }
-
-        return replayData;
     }
 
     /**
-     * extracts the steering inputs
+     * adds press and release events, ranges ending at 0 or after the replay last until the end
      *
-     * @param steeringList
-     * @param replayData
+     * @param events
+     * @param type
+     * @param starts
+     * @param ends
+     * @param replayTime
      */
-    private static void extractPadSteering( List<SteeringAction> steeringList, ReplayData replayData )
+    private static void addRanges( EventList events, int type, IntList starts, IntList ends, int replayTime )
     {
-        int lastTimeStamp = 0;
-        double lastSteering = 0.0;
-
-        for ( SteeringAction input : steeringList )
+        for ( int i = 0; i < starts.size(); i++ )
         {
-            int currentTime = Integer.parseInt( input.getTime() );
-
-            while ( lastTimeStamp + 10 < currentTime ) //timestamps are missing
+            int end = ends.get( i );
+            if ( end == 0 || end > replayTime ) //ESWC runs that press acceleration in the complete run show 0-0
             {
-                replayData.addSteering( lastSteering );
-                lastTimeStamp = lastTimeStamp + 10;
+                end = replayTime;
             }
-
-            lastSteering = Integer.parseInt( input.getValue() );
-            replayData.addSteering( lastSteering );
-            lastTimeStamp = currentTime;
-        }
-
-        while ( replayData.getSteeringLegth() * 10 < replayData.getReplayTime() ) //fill rest of the replay with same steering
-        {
-            replayData.addSteering( lastSteering );
+            events.add( ceilTick( starts.get( i ) ), type, 1 );
+            events.add( ceilTick( end ), type, -1 );
         }
     }
 
     /**
-     * extracts the steering input
-     *
-     * @param steeringList
-     * @param replayData
+     * @param time
+     * @return first 10ms tick at or after the given time
      */
-    private static void extractKeyboardSteering( List<SteeringAction> steeringList, ReplayData replayData )
+    private static int ceilTick( int time )
     {
-        int lastTimeStamp = 0;
-
-        for ( SteeringAction input : steeringList )
-        {
-            double steer = 0;
-
-            int startTime = Integer.parseInt( input.getTime().split( "-" )[0] );
-            int endTime = Integer.parseInt( input.getTime().split( "-" )[1] );
-
-            while ( lastTimeStamp + 10 < startTime ) //fill the time that passed since the last steering command with no steering
-            {
-                replayData.addSteering( steer );
-                lastTimeStamp = lastTimeStamp + 10;
-            }
-
-            if ( startTime <= lastTimeStamp ) //left and right are pressed at the same time
-            {
-                startTime = lastTimeStamp + 10; //start when only one button is pressed
-                //TODO not accurate, since pressing both left and right at the same time results in going LEFT
-            }
-
-            steer = input.getValue().equals( "left" ) ? -65536 : 65536; // keyboards can only fullsteer
-            for ( int i = startTime; i <= endTime; i = i + 10 )
-            {
-                replayData.addSteering( steer );
-            }
-            if ( endTime > lastTimeStamp )
-            {
-                lastTimeStamp = endTime;
-            }
-        }
-
-        while ( replayData.getSteeringLegth() * 10 < replayData.getReplayTime() ) //fill rest of the replay with no steering
-        {
-            replayData.addSteering( 0.0 );
-        }
+        return Math.max( 0, (time + 9) / 10 );
     }
 
     /**
-     * finds the latest timestamp in the input
-     *
-     * @param steeringList
-     * @param accelerationList
-     * @param brakeList
-     * @param replayData
+     * events of all channels, sortable by tick without boxing
      */
-    private static void calculateReplayLength( List<SteeringAction> steeringList, List<String> accelerationList, List<String> brakeList,
-            ReplayData replayData )
+    private static class EventList
     {
-        SteeringAction lastSteerPair = steeringList.get( steeringList.size() - 1 );
-        String lastAccelerationString = accelerationList.get( accelerationList.size() - 1 );
-        String lastBrakeString = brakeList.get( brakeList.size() - 1 );
-
-        int lastAcceleration = Integer.parseInt( lastAccelerationString.split( "-" )[1] );
-        int lastBrake = Integer.parseInt( lastBrakeString.split( "-" )[1] );
+        private long[] keys   = new long[64];
+        private int[]  types  = new int[64];
+        private int[]  values = new int[64];
+        private int    size   = 0;
 
-        int lastSteer = 0;
-        if ( lastSteerPair.getTime().contains( "-" ) ) // keyboard
+        void add( int tick, int type, int value )
         {
-            lastSteer = Integer.parseInt( lastSteerPair.getTime().split( "-" )[1] );
+            if ( size == keys.length )
+            {
+                keys = Arrays.copyOf( keys, size * 2 );
+                types = Arrays.copyOf( types, size * 2 );
+                values = Arrays.copyOf( values, size * 2 );
+            }
+            keys[size] = (long) tick << 32 | size;
+            types[size] = type;
+            values[size] = value;
+            size++;
         }
-        else //pad
+
+        void sort()
         {
-            lastSteer = Integer.parseInt( lastSteerPair.getTime() );
+            Arrays.sort( keys, 0, size );
         }
 
-        replayData.setReplayTime( Math.max( Math.max( lastAcceleration, lastBrake ), lastSteer ) );
-    }
-
-    /**
-     * extract the brake / acceleration inputs
-     *
-     * @param isAcceleration
-     * @param inputList
-     * @param replayData
-     */
-    private static void extractAccelerationOrBrake( boolean isAcceleration, List<String> inputList, ReplayData replayData )
-    {
-        int lastTime = 0;
-
-        if ( inputList.isEmpty() && isAcceleration )
+        int size()
         {
-            inputList.add( "0-0" ); //ESWC runs sometimes? don't have acceleration at all, assume it was pressed all the time
+            return size;
         }
 
-        for ( String s : inputList )
+        int getTick( int index )
         {
-            int startTime = Integer.parseInt( s.split( "-" )[0] );
-            int endTime = Integer.parseInt( s.split( "-" )[1] );
-
-            if ( lastTime < startTime ) //input doesn't start at 0 || input hasn't been pressed in a while
-            {
-                while ( lastTime < startTime )
-                {
-                    if ( isAcceleration )
-                    {
-                        replayData.addAcceleration( 0.0 );
-                    }
-                    else
-                    {
-                        replayData.addBrake( 0.0 );
-                    }
-                    lastTime = lastTime + 10;
-                }
-            }
-
-            //ESWC runs that press acceleration in the complete run show 0-0
-            if ( endTime == 0 || endTime > replayData.getReplayTime() )
-            {
-                endTime = replayData.getReplayTime();
-            }
-
-            if ( endTime != 0 ) //key is not pressed until the end of the run
-            {
-                while ( lastTime < endTime )
-                {
-                    if ( isAcceleration )
-                    {
-                        replayData.addAcceleration( GbxSteeringInput.MAX );
-                    }
-                    else
-                    {
-                        replayData.addBrake( GbxSteeringInput.MIN );
-                    }
-
-                    lastTime = lastTime + 10;
-                }
-            }
-
-            if ( inputList.indexOf( s ) == inputList.size() - 1 && endTime < replayData
-                    .getReplayTime() ) //is the last input && run is not over yet
-            {
-                while ( lastTime < replayData.getReplayTime() ) //fill rest of the run with no input
-                {
-                    if ( isAcceleration )
-                    {
-                        replayData.addAcceleration( 0.0 );
-                    }
-                    else
-                    {
-                        replayData.addBrake( 0.0 );
-                    }
-                    lastTime = lastTime + 10;
-                }
-            }
+            return (int) (keys[index] >> 32);
         }
-    }
 
-    /**
-     * checks if string is integer
-     *
-     * @param s
-     * @return
-     */
-    public static boolean isInteger( String s )
-    {
-        try
+        int getType( int index )
         {
-            Integer.parseInt( s );
+            return types[(int) keys[index]];
         }
-        catch ( Throwable e )
+
+        int getValue( int index )
         {
-            return false;
+            return values[(int) keys[index]];
         }
-        return true;
     }
 }
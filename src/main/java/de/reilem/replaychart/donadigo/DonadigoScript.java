@@ -0,0 +1,31 @@
+package de.reilem.replaychart.donadigo;
+
+/**
+ * The inputs of a TMInterface script, in the order of the file
+ */
+final class DonadigoScript
+{
+    /**
+     * analog steering: time and value
+     */
+    final IntList padTimes  = new IntList();
+    final IntList padValues = new IntList();
+
+    /**
+     * keyboard steering: pressed from start to end, 1 for left and 0 for right
+     */
+    final IntList keyStarts = new IntList();
+    final IntList keyEnds   = new IntList();
+    final IntList keyLeft   = new IntList();
+
+    final IntList accelerationStarts = new IntList();
+    final IntList accelerationEnds   = new IntList();
+
+    final IntList brakeStarts = new IntList();
+    final IntList brakeEnds   = new IntList();
+
+    /**
+     * latest time of any input, the length of the replay
+     */
+    int lastTime = 0;
+}
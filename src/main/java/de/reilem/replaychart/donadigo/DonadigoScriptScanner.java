@@ -0,0 +1,199 @@
+package de.reilem.replaychart.donadigo;
+
+import java.io.IOException;
+
+/**
+ * Parses TMInterface input scripts byte by byte, without creating strings for lines or tokens.
+ * Supported lines are "&lt;time&gt; steer &lt;value&gt;" and "&lt;start&gt;-&lt;end&gt; press up|down|left|right".
+ * Empty lines and lines starting with # are skipped.
+ */
+final class DonadigoScriptScanner
+{
+    private static final byte[] UP    = { 'u', 'p' };
+    private static final byte[] DOWN  = { 'd', 'o', 'w', 'n' };
+    private static final byte[] LEFT  = { 'l', 'e', 'f', 't' };
+    private static final byte[] RIGHT = { 'r', 'i', 'g', 'h', 't' };
+
+    private final byte[] content;
+    private final int    length;
+
+    private int position = 0;
+    private int line     = 1;
+
+    private DonadigoScriptScanner( byte[] content, int length )
+    {
+        this.content = content;
+        this.length = length;
+    }
+
+    /**
+     * parses the given script
+     *
+     * @param content
+     * @param length
+     * @return
+     * @throws IOException if a line can not be parsed
+     */
+    static DonadigoScript scan( byte[] content, int length ) throws IOException
+    {
+        return new DonadigoScriptScanner( content, length ).scan();
+    }
+
+    private DonadigoScript scan() throws IOException
+    {
+        DonadigoScript script = new DonadigoScript();
+        while ( position < length )
+        {
+            skipBlanks();
+            if ( position < length && !isLineEnd( content[position] ) && content[position] != '#' )
+            {
+                scanLine( script );
+            }
+            skipLine();
+        }
+        return script;
+    }
+
+    private void scanLine( DonadigoScript script ) throws IOException
+    {
+        int start = readInt();
+        int end = start;
+        boolean range = position < length && content[position] == '-';
+        if ( range )
+        {
+            position++;
+            end = readInt();
+        }
+
+        skipBlanks();
+        skipToken(); //action, press or steer
+        skipBlanks();
+
+        if ( position < length && (isDigit( content[position] ) || content[position] == '-') ) //pad steering
+        {
+            if ( range )
+            {
+                return; //steering values with a time range are not charted
+            }
+            script.padTimes.add( start );
+            script.padValues.add( readInt() );
+        }
+        else if ( matchToken( LEFT ) || matchToken( RIGHT ) ) //keyboard steering
+        {
+            script.keyStarts.add( start );
+            script.keyEnds.add( end );
+            script.keyLeft.add( content[position] == 'l' ? 1 : 0 );
+        }
+        else if ( matchToken( UP ) ) //acceleration
+        {
+            script.accelerationStarts.add( start );
+            script.accelerationEnds.add( end );
+        }
+        else if ( matchToken( DOWN ) ) //brake
+        {
+            script.brakeStarts.add( start );
+            script.brakeEnds.add( end );
+        }
+        else
+        {
+            return; //other actions (e.g. respawn) are not charted
+        }
+        script.lastTime = Math.max( script.lastTime, end );
+    }
+
+    private int readInt() throws IOException
+    {
+        boolean negative = position < length && content[position] == '-';
+        if ( negative )
+        {
+            position++;
+        }
+        if ( position >= length || !isDigit( content[position] ) )
+        {
+            throw error( "number expected" );
+        }
+
+        long value = 0;
+        while ( position < length && isDigit( content[position] ) )
+        {
+            value = value * 10 + (content[position++] - '0');
+            if ( value > Integer.MAX_VALUE )
+            {
+                throw error( "number too large" );
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * checks if the token at the current position equals the given one, the position is not changed
+     *
+     * @param token
+     * @return
+     */
+    private boolean matchToken( byte[] token )
+    {
+        if ( position + token.length > length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < token.length; i++ )
+        {
+            if ( content[position + i] != token[i] )
+            {
+                return false;
+            }
+        }
+        int end = position + token.length;
+        return end == length || isBlank( content[end] ) || isLineEnd( content[end] );
+    }
+
+    private void skipToken()
+    {
+        while ( position < length && !isBlank( content[position] ) && !isLineEnd( content[position] ) )
+        {
+            position++;
+        }
+    }
+
+    private void skipBlanks()
+    {
+        while ( position < length && isBlank( content[position] ) )
+        {
+            position++;
+        }
+    }
+
+    private void skipLine()
+    {
+        while ( position < length && content[position] != '\n' )
+        {
+            position++;
+        }
+        if ( position < length )
+        {
+            position++;
+            line++;
+        }
+    }
+
+    private IOException error( String message )
+    {
+        return new IOException( "Invalid script line " + line + ": " + message );
+    }
+
+    private static boolean isDigit( byte b )
+    {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isBlank( byte b )
+    {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isLineEnd( byte b )
+    {
+        return b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,41 @@
+package de.reilem.replaychart.donadigo;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints
+ */
+final class IntList
+{
+    private int[] values = new int[16];
+    private int   size   = 0;
+
+    void add( int value )
+    {
+        if ( size == values.length )
+        {
+            values = Arrays.copyOf( values, size * 2 );
+        }
+        values[size++] = value;
+    }
+
+    int get( int index )
+    {
+        return values[index];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    int last()
+    {
+        return values[size - 1];
+    }
+}
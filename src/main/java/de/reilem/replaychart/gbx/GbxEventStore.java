@@ -0,0 +1,249 @@
+package de.reilem.replaychart.gbx;
+
+import java.util.Arrays;
+
+/**
+ * Input events of a replay packed into primitive arrays instead of one object per event.
+ * Every event is a long holding the time in the upper and the value in the lower 32 bits, the type ordinal is kept beside it.
+ * Collects events as {@link GbxInputListener} and sorts them only if they did not arrive in time order.
+ */
+public final class GbxEventStore implements GbxInputListener
+{
+    private static final E_GbxInputType[] TYPES = E_GbxInputType.values();
+
+    private long[]  events = new long[0];
+    private byte[]  types  = new byte[0];
+    private int     size   = 0;
+    private boolean sorted = true;
+
+    public GbxEventStore()
+    {
+    }
+
+    /**
+     * @param capacity expected amount of events
+     */
+    public GbxEventStore( int capacity )
+    {
+        ensureCapacity( capacity );
+    }
+
+    @Override
+    public void begin( int replayTime, E_TmVersion tmVersion, int eventCount )
+    {
+        ensureCapacity( size + eventCount );
+    }
+
+    @Override
+    public boolean input( int time, E_GbxInputType type, int value )
+    {
+        add( time, type, value );
+        return true;
+    }
+
+    /**
+     * @param time in ms
+     * @param type
+     * @param value
+     */
+    public void add( int time, E_GbxInputType type, int value )
+    {
+        if ( size == events.length )
+        {
+            ensureCapacity( Math.max( 16, size * 2 ) );
+        }
+        long event = pack( time, value );
+        if ( size > 0 && event >> 32 < events[size - 1] >> 32 )
+        {
+            sorted = false;
+        }
+        events[size] = event;
+        types[size] = (byte) type.ordinal();
+        size++;
+    }
+
+    /**
+     * removes all events, the arrays are kept for reuse
+     */
+    public void clear()
+    {
+        size = 0;
+        sorted = true;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param type
+     * @return true if at least one event has the given type
+     */
+    public boolean contains( E_GbxInputType type )
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( types[i] == type.ordinal() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getTime( int index )
+    {
+        return (int) (events[index] >> 32);
+    }
+
+    public E_GbxInputType getType( int index )
+    {
+        return TYPES[types[index]];
+    }
+
+    public int getValue( int index )
+    {
+        return (int) events[index];
+    }
+
+    public boolean isSorted()
+    {
+        return sorted;
+    }
+
+    /**
+     * sorts the events by time, events with equal times keep their order
+     */
+    public void sort()
+    {
+        if ( sorted )
+        {
+            return;
+        }
+        long[] keys = new long[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            keys[i] = (events[i] & 0xFFFFFFFF00000000L) | i; //index breaks ties, which makes the sort stable
+        }
+        Arrays.sort( keys );
+
+        long[] sortedEvents = new long[events.length];
+        byte[] sortedTypes = new byte[types.length];
+        for ( int i = 0; i < size; i++ )
+        {
+            int index = (int) keys[i];
+            sortedEvents[i] = events[index];
+            sortedTypes[i] = types[index];
+        }
+        events = sortedEvents;
+        types = sortedTypes;
+        sorted = true;
+    }
+
+    /**
+     * binary search, the store must be sorted
+     *
+     * @param time in ms
+     * @return index of the first event at or after the given time, {@link #size()} if there is none
+     */
+    public int indexOf( int time )
+    {
+        int low = 0;
+        int high = size;
+        while ( low < high )
+        {
+            int mid = (low + high) >>> 1;
+            if ( getTime( mid ) < time )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return cursor before the first event
+     */
+    public Cursor cursor()
+    {
+        return new Cursor( 0 );
+    }
+
+    /**
+     * @param time in ms
+     * @return cursor before the first event at or after the given time, the store must be sorted
+     */
+    public Cursor cursor( int time )
+    {
+        return new Cursor( indexOf( time ) );
+    }
+
+    private void ensureCapacity( int capacity )
+    {
+        if ( events.length < capacity )
+        {
+            events = Arrays.copyOf( events, capacity );
+            types = Arrays.copyOf( types, capacity );
+        }
+    }
+
+    private static long pack( int time, int value )
+    {
+        return ((long) time << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Iterates the events in store order without creating objects
+     */
+    public final class Cursor
+    {
+        private int next;
+        private int current = -1;
+
+        private Cursor( int next )
+        {
+            this.next = next;
+        }
+
+        public boolean hasNext()
+        {
+            return next < size;
+        }
+
+        /**
+         * @return time of the next event without moving the cursor
+         */
+        public int peekTime()
+        {
+            return GbxEventStore.this.getTime( next );
+        }
+
+        /**
+         * moves the cursor to the next event
+         */
+        public void next()
+        {
+            current = next++;
+        }
+
+        public int getTime()
+        {
+            return GbxEventStore.this.getTime( current );
+        }
+
+        public E_GbxInputType getType()
+        {
+            return GbxEventStore.this.getType( current );
+        }
+
+        public int getValue()
+        {
+            return GbxEventStore.this.getValue( current );
+        }
+    }
+}
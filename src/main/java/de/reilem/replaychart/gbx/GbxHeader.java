@@ -0,0 +1,303 @@
+package de.reilem.replaychart.gbx;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the structure in front of the body of a GBX file: the header chunk table (user data),
+ * the reference table and the body sizes. Knowing these the compressed body can be read without searching the file.
+ */
+public final class GbxHeader
+{
+    /**
+     * the user data starts after magic, version, format flags, class id and user data size
+     */
+    public static final int USER_DATA_OFFSET = 17;
+
+    private static final int CHUNK_SIZE_MASK = 0x7FFFFFFF; //highest bit flags "heavy" chunks
+
+    private int     version;
+    private boolean bodyCompressed;
+    private int     classId;
+    private int     nodeCount;
+
+    private final Map<Integer, ByteBuffer> chunks = new LinkedHashMap<>();
+
+    private int bodyOffset;
+    private int uncompressedBodySize;
+    private int compressedBodySize;
+
+    private GbxHeader()
+    {
+    }
+
+    /**
+     * reads the header of a gbx file, the given buffer has to start at the beginning of the file
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file is no gbx or the header is damaged
+     */
+    public static GbxHeader read( ByteBuffer file ) throws IOException
+    {
+        ByteBuffer in = file.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        in.position( 0 );
+        try
+        {
+            GbxHeader header = readUserData( in );
+
+            header.nodeCount = in.getInt();
+            skipReferenceTable( in, header.version );
+
+            if ( header.bodyCompressed )
+            {
+                header.uncompressedBodySize = in.getInt();
+                header.compressedBodySize = in.getInt();
+                header.bodyOffset = in.position();
+            }
+            else
+            {
+                header.bodyOffset = in.position();
+                header.uncompressedBodySize = in.limit() - in.position();
+                header.compressedBodySize = header.uncompressedBodySize;
+            }
+            if ( header.bodyOffset + header.compressedBodySize > in.limit() || header.compressedBodySize < 0 )
+            {
+                throw new IOException( "Gbx body exceeds the file" );
+            }
+            return header;
+        }
+        catch ( BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e )
+        {
+            throw new IOException( "Damaged gbx header", e );
+        }
+    }
+
+    /**
+     * reads only the header chunks, the given buffer has to start at the beginning of the file and needs to contain
+     * at least {@link #getUserDataEnd(ByteBuffer)} bytes. Node count and body information are not available.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file is no gbx or the header is damaged
+     */
+    public static GbxHeader readHeaderChunks( ByteBuffer file ) throws IOException
+    {
+        ByteBuffer in = file.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        in.position( 0 );
+        try
+        {
+            return readUserData( in );
+        }
+        catch ( BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e )
+        {
+            throw new IOException( "Damaged gbx header", e );
+        }
+    }
+
+    /**
+     * calculates how many bytes from the start of the file are needed to read the header chunks
+     *
+     * @param prefix at least the first {@link #USER_DATA_OFFSET} bytes of the file
+     * @return
+     * @throws IOException if the file is no gbx
+     */
+    public static int getUserDataEnd( ByteBuffer prefix ) throws IOException
+    {
+        ByteBuffer in = prefix.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        if ( in.limit() < USER_DATA_OFFSET || in.get( 0 ) != 'G' || in.get( 1 ) != 'B' || in.get( 2 ) != 'X' )
+        {
+            throw new IOException( "Not a gbx file" );
+        }
+        int userDataSize = in.getInt( USER_DATA_OFFSET - 4 );
+        if ( userDataSize < 0 )
+        {
+            throw new IOException( "Damaged gbx header" );
+        }
+        return USER_DATA_OFFSET + userDataSize;
+    }
+
+    private static GbxHeader readUserData( ByteBuffer in ) throws IOException
+    {
+        GbxHeader header = new GbxHeader();
+        if ( in.get() != 'G' || in.get() != 'B' || in.get() != 'X' )
+        {
+            throw new IOException( "Not a gbx file" );
+        }
+        header.version = in.getShort() & 0xFFFF;
+        if ( header.version < 6 )
+        {
+            throw new IOException( "Unsupported gbx version: " + header.version );
+        }
+        in.get(); //format, B = binary
+        in.get(); //reference table compression
+        header.bodyCompressed = in.get() == 'C';
+        in.get(); //unknown, R or E
+        header.classId = in.getInt();
+
+        int userDataSize = in.getInt();
+        int userDataEnd = in.position() + userDataSize;
+        if ( userDataSize > 0 )
+        {
+            readChunks( in, header );
+        }
+        in.position( userDataEnd );
+        return header;
+    }
+
+    private static void readChunks( ByteBuffer in, GbxHeader header )
+    {
+        int chunkCount = in.getInt();
+        int[] ids = new int[chunkCount];
+        int[] sizes = new int[chunkCount];
+        for ( int i = 0; i < chunkCount; i++ )
+        {
+            ids[i] = in.getInt();
+            sizes[i] = in.getInt() & CHUNK_SIZE_MASK;
+        }
+
+        int offset = in.position();
+        for ( int i = 0; i < chunkCount; i++ )
+        {
+            ByteBuffer chunk = in.duplicate();
+            chunk.position( offset );
+            chunk.limit( offset + sizes[i] );
+            header.chunks.put( ids[i], chunk.slice().order( ByteOrder.LITTLE_ENDIAN ) );
+            offset += sizes[i];
+        }
+    }
+
+    /**
+     * skips the list of external files this file references, replays usually have none
+     *
+     * @param in
+     * @param version
+     */
+    private static void skipReferenceTable( ByteBuffer in, int version )
+    {
+        int externalNodeCount = in.getInt();
+        if ( externalNodeCount <= 0 )
+        {
+            return;
+        }
+
+        in.getInt(); //ancestor level
+        skipFolders( in, in.getInt() );
+
+        for ( int i = 0; i < externalNodeCount; i++ )
+        {
+            int flags = in.getInt();
+            if ( (flags & 4) == 0 )
+            {
+                skipString( in ); //file name
+            }
+            else
+            {
+                in.getInt(); //resource index
+            }
+            in.getInt(); //node index
+            if ( version >= 5 )
+            {
+                in.getInt(); //use file
+            }
+            if ( (flags & 4) == 0 )
+            {
+                in.getInt(); //folder index
+            }
+        }
+    }
+
+    private static void skipFolders( ByteBuffer in, int folderCount )
+    {
+        for ( int i = 0; i < folderCount; i++ )
+        {
+            skipString( in );
+            skipFolders( in, in.getInt() );
+        }
+    }
+
+    private static void skipString( ByteBuffer in )
+    {
+        int length = in.getInt();
+        in.position( in.position() + length );
+    }
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    public int getClassId()
+    {
+        return classId;
+    }
+
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * @param chunkId
+     * @return little endian view of the chunk data or null if the header has no such chunk
+     */
+    public ByteBuffer getChunk( int chunkId )
+    {
+        ByteBuffer chunk = chunks.get( chunkId );
+        return chunk == null ? null : chunk.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * finds the xml header, which is stored as string in one of the header chunks
+     *
+     * @return the xml or null
+     */
+    public String getXml()
+    {
+        for ( ByteBuffer chunk : chunks.values() )
+        {
+            if ( chunk.limit() < 11 )
+            {
+                continue;
+            }
+            int length = chunk.getInt( 0 );
+            if ( length > 0 && length <= chunk.limit() - 4 && chunk.get( 4 ) == '<' && chunk.get( 5 ) == 'h' )
+            {
+                byte[] xml = new byte[length];
+                ByteBuffer data = chunk.duplicate();
+                data.position( 4 );
+                data.get( xml );
+                return new String( xml, StandardCharsets.UTF_8 );
+            }
+        }
+        return null;
+    }
+
+    public boolean isBodyCompressed()
+    {
+        return bodyCompressed;
+    }
+
+    /**
+     * @return position of the (compressed) body in the file
+     */
+    public int getBodyOffset()
+    {
+        return bodyOffset;
+    }
+
+    public int getUncompressedBodySize()
+    {
+        return uncompressedBodySize;
+    }
+
+    public int getCompressedBodySize()
+    {
+        return compressedBodySize;
+    }
+}
@@ -0,0 +1,252 @@
+package de.reilem.replaychart.gbx;
+
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads replay metadata from the gbx header only, the body is neither read nor decompressed
+ */
+public class GbxHeaderScanner
+{
+    private static final int REPLAY_INFO_CHUNK = 0x03093000;
+    private static final int PREFIX_SIZE       = 8192;
+
+    /**
+     * reads version, race time, player and map of the given replay
+     *
+     * @param replayFilePath
+     * @return
+     * @throws IOException
+     */
+    public static ReplayMetadata scan( String replayFilePath ) throws IOException
+    {
+        Profiler.start( E_Stage.SCAN );
+        ByteBuffer userData = readUserData( replayFilePath );
+        ReplayMetadata metadata = metadata( replayFilePath, GbxHeader.readHeaderChunks( userData ) );
+        Profiler.stop( E_Stage.SCAN, userData.limit() );
+        return metadata;
+    }
+
+    /**
+     * reads version, race time, player and map from an already read header
+     *
+     * @param replayFilePath
+     * @param header
+     * @return
+     * @throws IOException
+     */
+    static ReplayMetadata metadata( String replayFilePath, GbxHeader header ) throws IOException
+    {
+        String xml = header.getXml();
+        E_TmVersion tmVersion = GbxInputExtractor.extractTmVersion( xml );
+
+        int raceTime = parseInt( xmlAttribute( xml, "times", "best" ) );
+        String mapName = xmlAttribute( xml, "map", "name" );
+        String mapUid = xmlAttribute( xml, "map", "uid" );
+        String playerName = null;
+
+        ByteBuffer info = header.getChunk( REPLAY_INFO_CHUNK );
+        if ( info != null )
+        {
+            try
+            {
+                int version = info.getInt();
+                if ( version >= 2 )
+                {
+                    LookbackStrings strings = new LookbackStrings();
+                    String uid = strings.read( info );
+                    strings.read( info ); //environment
+                    strings.read( info ); //map author
+                    int time = info.getInt();
+                    playerName = readString( info );
+
+                    mapUid = mapUid == null ? uid : mapUid;
+                    raceTime = raceTime < 0 ? time : raceTime;
+                }
+            }
+            catch ( BufferUnderflowException | IllegalArgumentException e )
+            {
+                //unknown chunk layout, keep what the xml offers
+            }
+        }
+        return new ReplayMetadata( replayFilePath, tmVersion, raceTime, playerName, mapName, mapUid );
+    }
+
+    /**
+     * picks the k fastest replays, replays without race time are ignored
+     *
+     * @param replays
+     * @param k
+     * @return fastest first
+     */
+    public static List<ReplayMetadata> fastest( List<ReplayMetadata> replays, int k )
+    {
+        List<ReplayMetadata> finished = new ArrayList<>();
+        for ( ReplayMetadata replay : replays )
+        {
+            if ( replay.getRaceTime() >= 0 )
+            {
+                finished.add( replay );
+            }
+        }
+        finished.sort( Comparator.comparingInt( ReplayMetadata::getRaceTime ) );
+        return finished.size() > k ? new ArrayList<>( finished.subList( 0, k ) ) : finished;
+    }
+
+    /**
+     * reads the start of the file up to the end of the header chunks
+     *
+     * @param replayFilePath
+     * @return
+     * @throws IOException
+     */
+    private static ByteBuffer readUserData( String replayFilePath ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( Paths.get( replayFilePath ), StandardOpenOption.READ ) )
+        {
+            ByteBuffer prefix = ByteBuffer.allocate( (int) Math.min( PREFIX_SIZE, channel.size() ) ).order( ByteOrder.LITTLE_ENDIAN );
+            readFully( channel, prefix );
+
+            int userDataEnd = GbxHeader.getUserDataEnd( prefix );
+            if ( userDataEnd <= prefix.limit() )
+            {
+                return prefix;
+            }
+            if ( userDataEnd > channel.size() )
+            {
+                throw new IOException( "Gbx header exceeds the file" );
+            }
+
+            ByteBuffer userData = ByteBuffer.allocate( userDataEnd ).order( ByteOrder.LITTLE_ENDIAN );
+            userData.put( prefix );
+            readFully( channel, userData );
+            return userData;
+        }
+    }
+
+    private static void readFully( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer ) < 0 )
+            {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    private static String readString( ByteBuffer in )
+    {
+        int length = in.getInt();
+        if ( length < 0 || length > in.remaining() )
+        {
+            throw new IllegalArgumentException( "Invalid string length: " + length );
+        }
+        byte[] bytes = new byte[length];
+        in.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * finds the value of an attribute of the first element with the given name
+     *
+     * @param xml
+     * @param element
+     * @param attribute
+     * @return the value or null
+     */
+    private static String xmlAttribute( String xml, String element, String attribute )
+    {
+        int start = xml.indexOf( "<" + element + " " );
+        if ( start < 0 )
+        {
+            return null;
+        }
+        int end = xml.indexOf( '>', start );
+        String key = " " + attribute + "=\"";
+        int index = xml.indexOf( key, start );
+        if ( index < 0 || index > end )
+        {
+            return null;
+        }
+        int valueStart = index + key.length();
+        int valueEnd = xml.indexOf( '"', valueStart );
+        return valueEnd < 0 ? null : unescape( xml.substring( valueStart, valueEnd ) );
+    }
+
+    private static String unescape( String value )
+    {
+        return value.replace( "&lt;", "<" ).replace( "&gt;", ">" ).replace( "&quot;", "\"" ).replace( "&apos;", "'" )
+                .replace( "&amp;", "&" );
+    }
+
+    private static int parseInt( String value )
+    {
+        if ( value == null )
+        {
+            return -1;
+        }
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * gbx "lookback" strings, repeated strings are stored as reference to their first occurrence
+     */
+    private static class LookbackStrings
+    {
+        private final List<String> strings = new ArrayList<>();
+        private       boolean      versionRead;
+
+        String read( ByteBuffer in )
+        {
+            if ( !versionRead )
+            {
+                in.getInt(); //lookback version, only stored in front of the first string
+                versionRead = true;
+            }
+
+            int index = in.getInt();
+            if ( index == -1 )
+            {
+                return "";
+            }
+            if ( (index & 0xC0000000) == 0 ) //predefined id
+            {
+                return String.valueOf( index );
+            }
+            if ( (index & 0x3FFFFFFF) == 0 ) //new string
+            {
+                String s = readString( in );
+                strings.add( s );
+                return s;
+            }
+            int reference = (index & 0x3FFFFFFF) - 1;
+            if ( reference >= strings.size() )
+            {
+                throw new IllegalArgumentException( "Invalid lookback string: " + index );
+            }
+            return strings.get( reference );
+        }
+    }
+}
@@ -2,106 +2,158 @@ package de.reilem.replaychart.gbx;
 
 import de.reilem.replaychart.E_SteeringType;
 import de.reilem.replaychart.ReplayData;
-import org.anarres.lzo.*;
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
+import de.reilem.replaychart.cache.ReplayCache;
+import de.reilem.replaychart.profile.E_Stage;
+import de.reilem.replaychart.profile.Profiler;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 
 public class GbxInputExtractor
 {
-    public static ReplayData parseReplayData( String replayFilePath, boolean invertedSteering ) throws DecoderException, IOException
-    {
-        byte[] replayFileBytes = Files.readAllBytes( Paths.get( replayFilePath ) );
-
-        String replayFileHex = Hex.encodeHexString( replayFileBytes );
-        String[] split = replayFileHex.split( "3c2f6865616465723e" ); //split after header
-        E_TmVersion tmVersion = extractTmVersion( split[0] );
+    private static final int INPUT_MARKER_FOREVER = 0x03092019;
+    private static final int INPUT_MARKER_ESWC    = 0x2403F00D;
+    private static final int INPUT_MARKER_TM2     = 0x03092025;
 
-        //skip reference table
-        int uncompressedBodySize;
-        int compressedBodySize;
-        byte[] compressedBodyBytes;
-
-        if ( tmVersion != E_TmVersion.TM2 ) //eswc & forever
+    public static ReplayData parseReplayData( String replayFilePath, boolean invertedSteering ) throws IOException
+    {
+        GbxWorkspace workspace = GbxWorkspace.get();
+        Profiler.start( E_Stage.READ );
+        ByteBuffer replayFile = workspace.readFile( Paths.get( replayFilePath ) );
+        Profiler.stop( E_Stage.READ, replayFile.limit() );
+
+        ReplayCache cache = ReplayCache.getDefault();
+        String cacheVariant = invertedSteering ? "gbx-inverted" : "gbx";
+        ReplayData replayData = null;
+        if ( cache != null )
         {
-            uncompressedBodySize = hexToInt( split[1].substring( 16, 24 ) ); //uncompressed body size
-            compressedBodySize = hexToInt( split[1].substring( 24, 32 ) ); //compressed body size
-            compressedBodyBytes = Hex.decodeHex( split[1].substring( 32 ) ); //compressed body bytes
+            Profiler.start( E_Stage.CACHE );
+            replayData = cache.get( replayFilePath, replayFile.array(), replayFile.limit(), cacheVariant );
+            Profiler.stop( E_Stage.CACHE );
         }
-        else
+        if ( replayData == null )
         {
-            int gbxMagicStringLocation = split[1].indexOf( "474258" );
-
-            int start = gbxMagicStringLocation - 36;
-            if ( split[1].substring( start, start + 2 ).equals( "00" ) )
+            replayData = parseReplayData( replayFile, invertedSteering, workspace );
+            replayData.setFileName( extractReplayName( replayFilePath ) );
+            if ( cache != null )
             {
-                start += 2;
+                cache.put( replayFilePath, replayFile.array(), replayFile.limit(), cacheVariant, replayData );
             }
-
-            uncompressedBodySize = hexToInt( split[1].substring( start, start + 8 ) );//uncompressed body size
-            compressedBodySize = hexToInt( split[1].substring( start + 8, start + 16 ) ); //compressed body size
-            compressedBodyBytes = Hex.decodeHex( split[1].substring( start + 16 ) ); //compressed body bytes
         }
+        return replayData;
+    }
+
+    /**
+     * passes the header information and the input events of the given replay to the listener in a single pass,
+     * the replay is neither built nor cached
+     *
+     * @param replayFilePath
+     * @param listener
+     * @return false if the listener stopped reading
+     * @throws IOException
+     */
+    public static boolean readInputs( String replayFilePath, GbxInputListener listener ) throws IOException
+    {
+        GbxWorkspace workspace = GbxWorkspace.get();
+        Profiler.start( E_Stage.READ );
+        ByteBuffer replayFile = workspace.readFile( Paths.get( replayFilePath ) );
+        Profiler.stop( E_Stage.READ, replayFile.limit() );
+        return readInputs( replayFile, replayFilePath, workspace, listener );
+    }
+
+    private static ReplayData parseReplayData( ByteBuffer replayFile, boolean invertedSteering, GbxWorkspace workspace ) throws IOException
+    {
+        GbxReplayBuilder builder = new GbxReplayBuilder( invertedSteering );
+        readInputs( replayFile, null, workspace, builder );
 
-        byte[] uncompressedBody = decompress( compressedBodyBytes, compressedBodySize, uncompressedBodySize );
-        String uncompressedBodyHex = Hex.encodeHexString( uncompressedBody ); //uncompressed body hex
+        Profiler.start( E_Stage.BUILD );
+        ReplayData replayData = builder.finish();
+        Profiler.stop( E_Stage.BUILD );
+        replayData.setType( E_SteeringType.DIGITAL );
+        return replayData;
+    }
 
-        //Files.write(Paths.get("/home/jedingerd@procilon.local/Downloads/tm2Test"), uncompressedBody);
+    /**
+     * @param replayFile
+     * @param replayFilePath metadata is only read and passed to the listener if given
+     * @param workspace
+     * @param listener
+     * @return false if the listener stopped reading
+     * @throws IOException
+     */
+    private static boolean readInputs( ByteBuffer replayFile, String replayFilePath, GbxWorkspace workspace, GbxInputListener listener )
+            throws IOException
+    {
+        Profiler.start( E_Stage.HEADER );
+        GbxHeader header = GbxHeader.read( replayFile );
+        E_TmVersion tmVersion = extractTmVersion( header.getXml() );
+        if ( replayFilePath != null )
+        {
+            listener.metadata( GbxHeaderScanner.metadata( replayFilePath, header ) );
+        }
+        Profiler.stop( E_Stage.HEADER, header.getBodyOffset() );
+        if ( !header.isBodyCompressed() )
+        {
+            throw new IOException( "Uncompressed replay bodies are not supported" );
+        }
+
+        Profiler.start( E_Stage.DECOMPRESS );
+        ByteBuffer body = workspace.decompress( replayFile.array(), header.getBodyOffset(), header.getCompressedBodySize(),
+                header.getUncompressedBodySize() );
+        Profiler.stop( E_Stage.DECOMPRESS, header.getUncompressedBodySize() );
+        Profiler.start( E_Stage.INPUTS );
+        byte[] uncompressedBody = body.array();
 
-        String inputMarker = tmVersion == E_TmVersion.FOREVER ? "19200903" : tmVersion == E_TmVersion.ESWC ? "0df00324" : "25200903";
+        int inputMarker = tmVersion == E_TmVersion.FOREVER ? INPUT_MARKER_FOREVER : tmVersion == E_TmVersion.ESWC ? INPUT_MARKER_ESWC : INPUT_MARKER_TM2;
 
-        String inputBlock = uncompressedBodyHex.split( inputMarker )[1]; //skip to input block
+        int index = indexOf( body, inputMarker ); //skip to input block
+        if ( index < 0 )
+        {
+            throw new IOException( "Unable to find input block" );
+        }
+        index += 4;
         if ( tmVersion == E_TmVersion.TM2 )
         {
-            inputBlock = inputBlock.substring( 24 );
+            index += 12;
         }
-        int replayTime = hexToInt( inputBlock.substring( 0, 8 ) ); //time driven in the replay
-        int amountOfDifferentInputs = hexToInt( inputBlock.substring( 16, 24 ) ); //amount of different inputs
+        int replayTime = body.getInt( index ); //time driven in the replay
+        int amountOfDifferentInputs = body.getInt( index + 8 ); //amount of different inputs
 
-        List<String> controlNames = new ArrayList<>(); //list of different inputs
+        E_GbxInputType[] controlTypes = new E_GbxInputType[amountOfDifferentInputs]; //list of different inputs
 
-        int index = 32; //start of the controlNames list
-        while ( controlNames.size() < amountOfDifferentInputs )
+        index += 16; //start of the controlNames list
+        for ( int i = 0; i < amountOfDifferentInputs; i++ )
         {
-            int length = hexToInt( inputBlock.substring( index, index + 8 ) ); //length of the input string
-            controlNames.add( hexToAscii( inputBlock.substring( index + 8, index + 8 + (length * 2) ) ) ); //read and add
-            index = index + 8 + (length * 2); //set index
-            if ( controlNames.size() < amountOfDifferentInputs )
+            int length = body.getInt( index ); //length of the input string
+            controlTypes[i] = E_GbxInputType.getType( new String( uncompressedBody, index + 4, length, StandardCharsets.ISO_8859_1 ) );
+            index = index + 4 + length;
+            if ( i < amountOfDifferentInputs - 1 )
             {
-                index += 8; //add index if we are not done yet
+                index += 4; //add index if we are not done yet
             }
         }
 
-        int amountOfInputs = hexToInt( inputBlock.substring( index, index + 8 ) ); //amount of inputs by player
-        index += 16;
-
-        List<GbxSteeringInput> inputs = new ArrayList<>();
+        int amountOfInputs = body.getInt( index ); //amount of inputs by player
+        index += 8;
 
-        while ( inputs.size() < amountOfInputs )
+        listener.begin( replayTime, tmVersion, amountOfInputs );
+        for ( int i = 0; i < amountOfInputs; i++ )
         {
-            GbxSteeringInput in = new GbxSteeringInput();
-
-            E_GbxInputType type = E_GbxInputType
-                    .getType( controlNames.get( hexToInt( inputBlock.substring( index + 8, index + 10 ) ) ) ); //get type of input
-            in.setType( type );
+            E_GbxInputType type = controlTypes[body.get( index + 4 ) & 0xFF]; //get type of input
 
             int value;
-            if ( in.getType() == E_GbxInputType.STEER )
+            if ( type == E_GbxInputType.STEER )
             {
-                value = hexToInt24( inputBlock.substring( index + 10, index + 18 ) ); //get pad steer input
+                value = readInt24( body, index + 5 ); //get pad steer input
             }
             else
             {
-                value = hexToInt( inputBlock.substring( index + 10, index + 18 ) );
+                value = body.getInt( index + 5 );
             }
-            in.setValue( value );
 
-            int time = hexToInt( inputBlock.substring( index, index + 8 ) ) - 100010;
+            int time = body.getInt( index ) - 100010; // read time + 100010
 
             if ( tmVersion == E_TmVersion.ESWC )
             {
@@ -117,24 +169,27 @@ public class GbxInputExtractor
             {
                 time += 10;
             }
-            in.setTime( time ); // read time + 100010
+            index += 9;
 
-            inputs.add( in );
-            index += 18;
+            if ( !listener.input( time, type, value ) )
+            {
+                Profiler.stop( E_Stage.INPUTS, (long) (i + 1) * 9 );
+                return false;
+            }
         }
-
-        ReplayData replayData = new GbxReplayBuilder().build( replayTime, inputs, invertedSteering, tmVersion );
-        replayData.setType( E_SteeringType.DIGITAL );
-
-        replayData.setFileName( extractReplayName( replayFilePath ) );
-        replayData.setTmVersion( tmVersion );
-
-        return replayData;
+        listener.end();
+        Profiler.stop( E_Stage.INPUTS, (long) amountOfInputs * 9 );
+        return true;
     }
 
-    private static E_TmVersion extractTmVersion( String header )
+    static E_TmVersion extractTmVersion( String header ) throws IOException
     {
-        String versionText = hexToAscii( header ).split( "exever=\"" )[1];
+        int versionIndex = header == null ? -1 : header.indexOf( "exever=\"" );
+        if ( versionIndex < 0 )
+        {
+            throw new IOException( "Unable to find exe version in header" );
+        }
+        String versionText = header.substring( versionIndex + 8 );
 
         if ( versionText.startsWith( "0." ) )
         {
@@ -161,47 +216,35 @@ public class GbxInputExtractor
         return fileName.substring( 0, fileName.toLowerCase().lastIndexOf( ".r" ) );
     }
 
-    private static byte[] decompress( byte[] src, int compressedSize, int uncompressedSize ) throws IOException
+    /**
+     * reads a signed little endian 24 bit pad steering value, the game stores it inverted
+     *
+     * @param buffer
+     * @param index
+     * @return
+     */
+    private static int readInt24( ByteBuffer buffer, int index )
     {
-        LzoDecompressor decompressor = LzoLibrary.getInstance().newDecompressor( LzoAlgorithm.LZO1X, null );
-        byte[] uncompressedBody = new byte[uncompressedSize];
-        int lzoReturnCode = decompressor.decompress( src, 0, compressedSize, uncompressedBody, 0, new lzo_uintp( uncompressedSize ) );
-        if ( lzoReturnCode == LzoTransformer.LZO_E_OK )
-        {
-            return uncompressedBody;
-        }
-        throw new IOException( "Unable to decompress data, lzo code: " + lzoReturnCode );
+        return -((buffer.get( index + 2 )) << 16 | (buffer.get( index + 1 ) & 0xFF) << 8 | (buffer.get( index ) & 0xFF));
     }
 
-    private static int hexToInt( String hex )
+    /**
+     * finds the first occurrence of the given little endian int
+     *
+     * @param buffer
+     * @param value
+     * @return index of the first byte or -1
+     */
+    private static int indexOf( ByteBuffer buffer, int value )
     {
-        int index = 0;
-        StringBuilder reversedHex = new StringBuilder();
-
-        while ( index + 2 <= hex.length() )
+        int last = buffer.limit() - 4;
+        for ( int i = 0; i <= last; i++ )
         {
-            reversedHex.insert( 0, hex, index, index + 2 );
-            index = index + 2;
-        }
-
-        return Integer.parseInt( reversedHex.toString(), 16 );
-    }
-
-    private static int hexToInt24( String hex ) throws DecoderException
-    {
-        byte[] input = Hex.decodeHex( hex.substring( 0, 6 ) ); //d2fcff
-        return -((input[2]) << 16 | (input[1] & 0xFF) << 8 | (input[0] & 0xFF));
-    }
-
-    private static String hexToAscii( String hexString )
-    {
-        StringBuilder sb = new StringBuilder();
-
-        for ( int i = 0; i < hexString.length(); i += 2 )
-        {
-            String s = hexString.substring( i, i + 2 );
-            sb.append( (char) Integer.parseInt( s, 16 ) );
+            if ( buffer.getInt( i ) == value )
+            {
+                return i;
+            }
         }
-        return sb.toString();
+        return -1;
     }
 }
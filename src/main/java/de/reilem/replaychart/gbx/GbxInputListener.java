@@ -0,0 +1,44 @@
+package de.reilem.replaychart.gbx;
+
+/**
+ * Receives the input events of a replay while its input block is decoded, no event objects are created.
+ * Events arrive in file order, which is almost but not strictly sorted by time.
+ */
+public interface GbxInputListener
+{
+    /**
+     * called once before {@link #begin(int, E_TmVersion, int)} with the information of the header,
+     * only if the replay is read by {@link GbxInputExtractor#readInputs(String, GbxInputListener)}
+     *
+     * @param metadata
+     */
+    default void metadata( ReplayMetadata metadata )
+    {
+    }
+
+    /**
+     * called once before the first event
+     *
+     * @param replayTime time driven in ms
+     * @param tmVersion
+     * @param eventCount amount of events that follow unless reading is stopped
+     */
+    default void begin( int replayTime, E_TmVersion tmVersion, int eventCount )
+    {
+    }
+
+    /**
+     * @param time in ms, adjusted like the charts use it
+     * @param type
+     * @param value 0/1 for keys, -65536 - 65536 for pad steering
+     * @return false to stop reading the remaining events
+     */
+    boolean input( int time, E_GbxInputType type, int value );
+
+    /**
+     * called once after the last event, not called if reading was stopped
+     */
+    default void end()
+    {
+    }
+}
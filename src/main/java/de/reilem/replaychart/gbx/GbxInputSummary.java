@@ -0,0 +1,96 @@
+package de.reilem.replaychart.gbx;
+
+import java.io.IOException;
+
+/**
+ * Header information, respawns and steering timestamps of a replay, read in a single pass without building any channels.
+ * Follows the rules of {@link GbxTimelineListener}, so the totals equal those of the built replay. Enough for consumers
+ * that only need totals, e.g. the replay library.
+ */
+public class GbxInputSummary extends GbxTimelineListener
+{
+    private ReplayMetadata metadata       = null;
+    private int            respawns       = 0;
+    private int            padSteers      = 0;
+    private int            keyboardSteers = 0;
+
+    public GbxInputSummary()
+    {
+        super( false );
+    }
+
+    /**
+     * @param replayFilePath
+     * @return summary of the header and all input events of the replay
+     * @throws IOException
+     */
+    public static GbxInputSummary read( String replayFilePath ) throws IOException
+    {
+        GbxInputSummary summary = new GbxInputSummary();
+        GbxInputExtractor.readInputs( replayFilePath, summary );
+        return summary;
+    }
+
+    @Override
+    public void metadata( ReplayMetadata metadata )
+    {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void begin( int replayTime, E_TmVersion tmVersion, int eventCount )
+    {
+        super.begin( replayTime, tmVersion, eventCount );
+        respawns = 0;
+        padSteers = 0;
+        keyboardSteers = 0;
+    }
+
+    @Override
+    protected void respawn( int time )
+    {
+        respawns++;
+    }
+
+    @Override
+    protected void timestamp( double acceleration, double brake, double steering, boolean pad )
+    {
+        if ( pad )
+        {
+            padSteers++;
+        }
+        else if ( steering != 0.0 )
+        {
+            keyboardSteers++;
+        }
+    }
+
+    /**
+     * @return header information, null if the header was not read
+     */
+    public ReplayMetadata getMetadata()
+    {
+        return metadata;
+    }
+
+    public int getRespawns()
+    {
+        return respawns;
+    }
+
+    /**
+     * @return amount of timestamps steered by pad
+     */
+    public int getPadSteers()
+    {
+        return padSteers;
+    }
+
+    /**
+     * @return amount of timestamps steered by keyboard
+     */
+    public int getKeyboardSteers()
+    {
+        return keyboardSteers;
+    }
+}
@@ -1,110 +1,90 @@
 package de.reilem.replaychart.gbx;
 
+import de.reilem.replaychart.E_ChannelStorage;
 import de.reilem.replaychart.ReplayData;
 
-import java.util.List;
-
-public class GbxReplayBuilder
+/**
+ * Turns the input events of a replay into channels. Events are collected while they are read, the replay is built by
+ * {@link #finish()}. A builder can be reused for several replays.
+ */
+public class GbxReplayBuilder extends GbxTimelineListener
 {
-    private int    timestamp    = 0;
-    private double acceleration = 0.0;
-    private double brake        = 0.0;
-    private double steering     = 0.0; //pad
-    private double steer_right  = 0.0; //kb
-    private double steer_left   = 0.0; //kb
+    private ReplayData replay;
 
-    private List<GbxSteeringInput> inputs;
-    private ReplayData             replay;
+    public GbxReplayBuilder()
+    {
+        this( false );
+    }
 
-    public ReplayData build( int replayTime, List<GbxSteeringInput> inputs, boolean invertedSteering,
-            E_TmVersion tmVersion )
+    public GbxReplayBuilder( boolean invertedSteering )
     {
-        this.inputs = inputs;
-        replay = new ReplayData();
-        replay.setReplayTime( replayTime );
+        super( invertedSteering );
+    }
 
-        while ( timestamp < replayTime )
-        {
-            evaluateEventsAt( timestamp, invertedSteering );
-            addTimeStamp();
-            timestamp += 10;
-        }
+    /**
+     * builds a replay from already decoded events
+     *
+     * @param replayTime
+     * @param events sorted if necessary
+     * @param invertedSteering
+     * @param tmVersion
+     * @return
+     */
+    public static ReplayData build( int replayTime, GbxEventStore events, boolean invertedSteering, E_TmVersion tmVersion )
+    {
+        GbxReplayBuilder builder = new GbxReplayBuilder( invertedSteering );
+        builder.replay = newReplay( replayTime, tmVersion, events );
+        builder.replay( replayTime, tmVersion, events );
+        return builder.replay;
+    }
 
-        for ( GbxSteeringInput input : inputs )
-        {
-            if ( input.getType() == E_GbxInputType.RESPAWN && input.getValue() == 1 )
-            {
-                replay.addRespawn( input.getTime() );
-            }
-        }
+    /**
+     * the replay is built by {@link #finish()}
+     */
+    @Override
+    public void end()
+    {
+    }
 
+    /**
+     * builds the replay from all events received since {@link #begin(int, E_TmVersion, int)}
+     *
+     * @return
+     */
+    public ReplayData finish()
+    {
+        replay = newReplay( getReplayTime(), getTmVersion(), getEvents() );
+        super.end();
         return replay;
     }
 
-    private void evaluateEventsAt( int timestamp, boolean invertedSteering )
+    @Override
+    protected void respawn( int time )
     {
-        for ( GbxSteeringInput input : inputs )
-        {
-            if ( input.getTime() == timestamp )
-            {
-                if ( input.getType() == E_GbxInputType.ACCELERATE )
-                {
-                    acceleration = input.getValue() > 0.0 ? GbxSteeringInput.MAX : 0.0;
-                }
-                else if ( input.getType() == E_GbxInputType.BRAKE )
-                {
-                    brake = input.getValue() > 0.0 ? GbxSteeringInput.MIN : 0.0;
-                }
-                else if ( input.getType() == E_GbxInputType.STEER_RIGHT )
-                {
-                    steer_right = input.getValue() == 0.0 ? 0.0 : invertedSteering ? GbxSteeringInput.MIN : GbxSteeringInput.MAX;
-                }
-                else if ( input.getType() == E_GbxInputType.STEER_LEFT )
-                {
-                    steer_left = input.getValue() == 0.0 ? 0.0 : invertedSteering ? GbxSteeringInput.MAX : GbxSteeringInput.MIN;
-                }
-                else if ( input.getType() == E_GbxInputType.STEER )
-                {
-                    steering = invertedSteering ? input.getValue() * -1.0 : input.getValue();
-                }
-            }
-        }
+        replay.addRespawn( time );
     }
 
-    private void addTimeStamp()
+    @Override
+    protected void timestamp( double acceleration, double brake, double steering, boolean pad )
     {
-        replay.addTimestamp( timestamp );
         replay.addAcceleration( acceleration );
         replay.addBrake( brake );
-
-        if ( acceleration != 0.0 )
-        {
-            replay.addThrottleAction();
-        }
-        if ( brake != 0.0 )
-        {
-            replay.addBrakeAction();
-        }
-
-        if ( steering != 0.0 ) //define that pad steering is stronger than keyboard
+        replay.addSteering( steering );
+        if ( pad )
         {
-            replay.addSteering( steering );
             replay.addPadAction();
         }
-        else if ( steer_left != 0.0 ) //left is stronger than right
+        else if ( steering != 0.0 )
         {
-            replay.addSteering( steer_left );
             replay.addKeyboardAction();
         }
-        else if ( steer_right != 0.0 )
-        {
-            replay.addSteering( steer_right );
-            replay.addKeyboardAction();
-        }
-        else
-        {
-            replay.addSteering( 0.0 );
-        }
     }
 
+    private static ReplayData newReplay( int replayTime, E_TmVersion tmVersion, GbxEventStore events )
+    {
+        ReplayData replay = new ReplayData( E_ChannelStorage.forSteering( events.contains( E_GbxInputType.STEER ) ), E_ChannelStorage.EVENTS );
+        replay.setReplayTime( replayTime );
+        replay.setTmVersion( tmVersion );
+        return replay;
+    }
 }
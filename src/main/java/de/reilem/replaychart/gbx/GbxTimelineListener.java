@@ -0,0 +1,177 @@
+package de.reilem.replaychart.gbx;
+
+/**
+ * Replays the input events of a replay on the 10ms timeline of the charts and reports the state of every timestamp.
+ * Events are collected in a {@link GbxEventStore} first, because they arrive only almost sorted by time
+ * (e.g. releases are delayed by 10ms). Events that lie between two timestamps are skipped, respawns always count.
+ * A listener can be reused, {@link #begin(int, E_TmVersion, int)} resets it.
+ */
+public abstract class GbxTimelineListener implements GbxInputListener
+{
+    private final boolean       invertedSteering;
+    private final GbxEventStore events = new GbxEventStore();
+
+    private int         replayTime   = 0;
+    private E_TmVersion tmVersion    = null;
+    private double      acceleration = 0.0;
+    private double      brake        = 0.0;
+    private double      steering     = 0.0; //pad
+    private double      steer_right  = 0.0; //kb
+    private double      steer_left   = 0.0; //kb
+
+    protected GbxTimelineListener( boolean invertedSteering )
+    {
+        this.invertedSteering = invertedSteering;
+    }
+
+    @Override
+    public void begin( int replayTime, E_TmVersion tmVersion, int eventCount )
+    {
+        this.replayTime = replayTime;
+        this.tmVersion = tmVersion;
+        events.clear();
+        events.begin( replayTime, tmVersion, eventCount );
+    }
+
+    @Override
+    public boolean input( int time, E_GbxInputType type, int value )
+    {
+        return events.input( time, type, value );
+    }
+
+    @Override
+    public void end()
+    {
+        replay( events );
+    }
+
+    /**
+     * @return time driven in ms
+     */
+    public int getReplayTime()
+    {
+        return replayTime;
+    }
+
+    public E_TmVersion getTmVersion()
+    {
+        return tmVersion;
+    }
+
+    /**
+     * @return events received since {@link #begin(int, E_TmVersion, int)}
+     */
+    protected GbxEventStore getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * walks the timeline of the given events, sorting them if necessary
+     *
+     * @param events
+     */
+    protected void replay( GbxEventStore events )
+    {
+        events.sort();
+        acceleration = 0.0;
+        brake = 0.0;
+        steering = 0.0;
+        steer_right = 0.0;
+        steer_left = 0.0;
+
+        for ( int i = 0; i < events.size(); i++ )
+        {
+            if ( events.getType( i ) == E_GbxInputType.RESPAWN && events.getValue( i ) == 1 )
+            {
+                respawn( events.getTime( i ) );
+            }
+        }
+
+        GbxEventStore.Cursor cursor = events.cursor();
+        for ( int timestamp = 0; timestamp < replayTime; timestamp += 10 )
+        {
+            evaluateEventsAt( cursor, timestamp );
+            if ( steering != 0.0 ) //define that pad steering is stronger than keyboard
+            {
+                timestamp( acceleration, brake, steering, true );
+            }
+            else //left is stronger than right
+            {
+                timestamp( acceleration, brake, steer_left != 0.0 ? steer_left : steer_right, false );
+            }
+        }
+    }
+
+    /**
+     * replays the given events instead of the received ones
+     *
+     * @param replayTime
+     * @param tmVersion
+     * @param events
+     */
+    protected void replay( int replayTime, E_TmVersion tmVersion, GbxEventStore events )
+    {
+        this.replayTime = replayTime;
+        this.tmVersion = tmVersion;
+        replay( events );
+    }
+
+    /**
+     * called for every respawn in time order, before the first timestamp
+     *
+     * @param time in ms
+     */
+    protected void respawn( int time )
+    {
+    }
+
+    /**
+     * called for every 10ms step of the replay
+     *
+     * @param acceleration 0 or {@link GbxSteeringInput#MAX}
+     * @param brake 0 or {@link GbxSteeringInput#MIN}
+     * @param steering 0 if not steering
+     * @param pad true if the steering comes from a pad, false if it comes from the keyboard
+     */
+    protected abstract void timestamp( double acceleration, double brake, double steering, boolean pad );
+
+    /**
+     * applies all events of the given timestamp, events that lie between two timestamps are skipped
+     *
+     * @param cursor positioned before the first event not evaluated yet, moved behind the given timestamp
+     * @param timestamp
+     */
+    private void evaluateEventsAt( GbxEventStore.Cursor cursor, int timestamp )
+    {
+        while ( cursor.hasNext() && cursor.peekTime() <= timestamp )
+        {
+            cursor.next();
+            if ( cursor.getTime() == timestamp )
+            {
+                E_GbxInputType type = cursor.getType();
+                int value = cursor.getValue();
+                if ( type == E_GbxInputType.ACCELERATE )
+                {
+                    acceleration = value > 0 ? GbxSteeringInput.MAX : 0.0;
+                }
+                else if ( type == E_GbxInputType.BRAKE )
+                {
+                    brake = value > 0 ? GbxSteeringInput.MIN : 0.0;
+                }
+                else if ( type == E_GbxInputType.STEER_RIGHT )
+                {
+                    steer_right = value == 0 ? 0.0 : invertedSteering ? GbxSteeringInput.MIN : GbxSteeringInput.MAX;
+                }
+                else if ( type == E_GbxInputType.STEER_LEFT )
+                {
+                    steer_left = value == 0 ? 0.0 : invertedSteering ? GbxSteeringInput.MAX : GbxSteeringInput.MIN;
+                }
+                else if ( type == E_GbxInputType.STEER )
+                {
+                    steering = invertedSteering ? value * -1.0 : value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package de.reilem.replaychart.gbx;
+
+import org.anarres.lzo.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reusable buffers and lzo decompressor of one parser thread.
+ * Buffers returned by a workspace are only valid until the next call on the same workspace.
+ */
+final class GbxWorkspace
+{
+    private static final ThreadLocal<GbxWorkspace> WORKSPACES = ThreadLocal.withInitial( GbxWorkspace::new );
+
+    /**
+     * larger buffers are only allocated for one file, to not keep them alive in idle threads
+     */
+    private static final int MAX_RETAINED_SIZE = 16 * 1024 * 1024;
+
+    private final LzoDecompressor decompressor = LzoLibrary.getInstance().newDecompressor( LzoAlgorithm.LZO1X, null );
+    private final lzo_uintp       outputLength = new lzo_uintp();
+
+    private byte[] fileBuffer = new byte[64 * 1024];
+    private byte[] bodyBuffer = new byte[256 * 1024];
+
+    private GbxWorkspace()
+    {
+    }
+
+    /**
+     * @return the workspace of the current thread
+     */
+    static GbxWorkspace get()
+    {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * reads the whole file into the file buffer
+     *
+     * @param file
+     * @return little endian buffer over the file bytes, backed by an array starting at 0
+     * @throws IOException
+     */
+    ByteBuffer readFile( Path file ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            long size = channel.size();
+            if ( size > Integer.MAX_VALUE )
+            {
+                throw new IOException( "File too large: " + file );
+            }
+            byte[] buffer = fileBuffer.length >= size ? fileBuffer : allocate( (int) size, true );
+            ByteBuffer content = ByteBuffer.wrap( buffer, 0, (int) size ).order( ByteOrder.LITTLE_ENDIAN );
+            while ( content.hasRemaining() )
+            {
+                if ( channel.read( content ) < 0 )
+                {
+                    throw new EOFException( "File shrunk while reading: " + file );
+                }
+            }
+            content.flip();
+            return content;
+        }
+    }
+
+    /**
+     * decompresses a lzo1x compressed part of the given array into the body buffer
+     *
+     * @param src
+     * @param offset
+     * @param compressedSize
+     * @param uncompressedSize
+     * @return little endian buffer over the uncompressed bytes, backed by an array starting at 0
+     * @throws IOException
+     */
+    ByteBuffer decompress( byte[] src, int offset, int compressedSize, int uncompressedSize ) throws IOException
+    {
+        if ( uncompressedSize < 0 || compressedSize < 0 || offset + compressedSize > src.length )
+        {
+            throw new IOException( "Invalid body size" );
+        }
+        byte[] body = bodyBuffer.length >= uncompressedSize ? bodyBuffer : allocate( uncompressedSize, false );
+
+        outputLength.value = uncompressedSize;
+        int lzoReturnCode = decompressor.decompress( src, offset, compressedSize, body, 0, outputLength );
+        if ( lzoReturnCode != LzoTransformer.LZO_E_OK )
+        {
+            throw new IOException( "Unable to decompress data, lzo code: " + lzoReturnCode );
+        }
+        return ByteBuffer.wrap( body, 0, uncompressedSize ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    private byte[] allocate( int size, boolean fileBuffer )
+    {
+        byte[] buffer = new byte[Math.max( size, (int) Math.min( Integer.MAX_VALUE - 8, size + (long) (size >> 2) ) )];
+        if ( buffer.length <= MAX_RETAINED_SIZE )
+        {
+            if ( fileBuffer )
+            {
+                this.fileBuffer = buffer;
+            }
+            else
+            {
+                this.bodyBuffer = buffer;
+            }
+        }
+        return buffer;
+    }
+}
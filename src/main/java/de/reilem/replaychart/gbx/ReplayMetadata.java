@@ -0,0 +1,57 @@
+package de.reilem.replaychart.gbx;
+
+/**
+ * Information about a replay that is available from the gbx header alone
+ */
+public final class ReplayMetadata
+{
+    private final String      file;
+    private final E_TmVersion tmVersion;
+    private final int         raceTime;
+    private final String      playerName;
+    private final String      mapName;
+    private final String      mapUid;
+
+    public ReplayMetadata( String file, E_TmVersion tmVersion, int raceTime, String playerName, String mapName, String mapUid )
+    {
+        this.file = file;
+        this.tmVersion = tmVersion;
+        this.raceTime = raceTime;
+        this.playerName = playerName;
+        this.mapName = mapName;
+        this.mapUid = mapUid;
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    public E_TmVersion getTmVersion()
+    {
+        return tmVersion;
+    }
+
+    /**
+     * @return race time in ms or -1 if the header contains none
+     */
+    public int getRaceTime()
+    {
+        return raceTime;
+    }
+
+    public String getPlayerName()
+    {
+        return playerName;
+    }
+
+    public String getMapName()
+    {
+        return mapName;
+    }
+
+    public String getMapUid()
+    {
+        return mapUid;
+    }
+}
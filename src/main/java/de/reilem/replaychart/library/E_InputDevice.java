@@ -0,0 +1,31 @@
+package de.reilem.replaychart.library;
+
+import de.reilem.replaychart.ReplayData;
+
+public enum E_InputDevice
+{
+    KEYBOARD, PAD, MIXED;
+
+    /**
+     * @param replay
+     * @return device used for steering, keyboard if the replay doesn't steer at all
+     */
+    public static E_InputDevice of( ReplayData replay )
+    {
+        return of( replay.getPadSteers(), replay.getKeyboardSteers() );
+    }
+
+    /**
+     * @param padSteers amount of pad steering timestamps
+     * @param keyboardSteers amount of keyboard steering timestamps
+     * @return device used for steering, keyboard if the replay doesn't steer at all
+     */
+    public static E_InputDevice of( int padSteers, int keyboardSteers )
+    {
+        if ( padSteers > 0 )
+        {
+            return keyboardSteers > 0 ? MIXED : PAD;
+        }
+        return KEYBOARD;
+    }
+}
@@ -0,0 +1,112 @@
+package de.reilem.replaychart.library;
+
+import de.reilem.replaychart.ReplayChart;
+import de.reilem.replaychart.ReplayLoader;
+import de.reilem.replaychart.gbx.GbxHeaderScanner;
+import de.reilem.replaychart.gbx.ReplayMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Library modes of the command line, no window is opened
+ */
+public final class LibraryCommand
+{
+    private LibraryCommand()
+    {
+    }
+
+    /**
+     * prints time, player and map of all given replays sorted by time, only the headers are read
+     *
+     * @param arguments replay files or a single folder
+     * @param workerCount
+     */
+    public static void listReplays( List<String> arguments, int workerCount )
+    {
+        List<ReplayMetadata> replays = new ReplayLoader( workerCount ).load( ReplayLoader.listReplayFiles( arguments, true ), GbxHeaderScanner::scan );
+        replays.sort( Comparator.comparingInt( r -> r.getRaceTime() < 0 ? Integer.MAX_VALUE : r.getRaceTime() ) );
+        for ( ReplayMetadata r : replays )
+        {
+            System.out.println( String.format( "%-12s %-24s %-32s %s",
+                    r.getRaceTime() < 0 ? "-" : ReplayChart.formatTime( (double) r.getRaceTime(), r.getTmVersion() ),
+                    r.getPlayerName() == null ? "-" : r.getPlayerName(), r.getMapName() == null ? "-" : r.getMapName(), r.getFile() ) );
+        }
+    }
+
+    /**
+     * adds all replays in the given folders (including sub folders) and files to the library index, removed replays are dropped from it
+     *
+     * @param arguments
+     * @param workerCount
+     */
+    public static void updateLibrary( List<String> arguments, int workerCount )
+    {
+        try
+        {
+            List<String> files = new ArrayList<>();
+            for ( String argument : arguments )
+            {
+                if ( new File( argument ).isDirectory() )
+                {
+                    try ( Stream<Path> paths = Files.walk( Paths.get( argument ) ) )
+                    {
+                        paths.filter( p -> p.getFileName().toString().toLowerCase().endsWith( ".replay.gbx" ) && Files.isRegularFile( p ) )
+                                .sorted().forEach( p -> files.add( p.toString() ) );
+                    }
+                }
+                else
+                {
+                    files.add( argument );
+                }
+            }
+            LibraryIndex library = LibraryIndex.inUserHome();
+            int updated = library.update( files, workerCount );
+            int removed = library.prune();
+            System.out.println( "Indexed " + updated + " new or changed replays, removed " + removed + ", library contains " + library.size() + " replays" );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Failed to update library: " + e );
+        }
+    }
+
+    /**
+     * looks up replays in the library index
+     *
+     * @param query see {@link LibraryQuery#parse(String)}
+     * @return files of the matching replays, fastest first, null if the query is invalid
+     */
+    public static List<String> queryLibrary( String query )
+    {
+        LibraryQuery libraryQuery;
+        try
+        {
+            libraryQuery = LibraryQuery.parse( query );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( "Invalid library query \"" + query + "\" (" + e.getMessage() + "), expected e.g. \"version=TM2,map=A01-Race,time=45000,input=pad,limit=10\"" );
+            return null;
+        }
+
+        List<String> files = new ArrayList<>();
+        try
+        {
+            LibraryIndex.inUserHome().query( libraryQuery ).forEach( e -> files.add( e.getFile() ) );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Failed to read library: " + e );
+        }
+        return files;
+    }
+}
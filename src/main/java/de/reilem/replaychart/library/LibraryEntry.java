@@ -0,0 +1,77 @@
+package de.reilem.replaychart.library;
+
+import de.reilem.replaychart.gbx.E_TmVersion;
+
+/**
+ * One replay of the library index
+ */
+public final class LibraryEntry
+{
+    private final String        file;
+    private final E_TmVersion   tmVersion;
+    private final String        mapName;
+    private final String        mapUid;
+    private final String        playerName;
+    private final int           raceTime;
+    private final E_InputDevice inputDevice;
+    private final int           respawns;
+
+    LibraryEntry( String file, E_TmVersion tmVersion, String mapName, String mapUid, String playerName, int raceTime, E_InputDevice inputDevice,
+            int respawns )
+    {
+        this.file = file;
+        this.tmVersion = tmVersion;
+        this.mapName = mapName;
+        this.mapUid = mapUid;
+        this.playerName = playerName;
+        this.raceTime = raceTime;
+        this.inputDevice = inputDevice;
+        this.respawns = respawns;
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return null if unknown
+     */
+    public E_TmVersion getTmVersion()
+    {
+        return tmVersion;
+    }
+
+    public String getMapName()
+    {
+        return mapName;
+    }
+
+    public String getMapUid()
+    {
+        return mapUid;
+    }
+
+    public String getPlayerName()
+    {
+        return playerName;
+    }
+
+    /**
+     * @return in ms
+     */
+    public int getRaceTime()
+    {
+        return raceTime;
+    }
+
+    public E_InputDevice getInputDevice()
+    {
+        return inputDevice;
+    }
+
+    public int getRespawns()
+    {
+        return respawns;
+    }
+}
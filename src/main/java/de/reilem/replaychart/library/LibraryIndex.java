@@ -0,0 +1,511 @@
+package de.reilem.replaychart.library;
+
+import de.reilem.replaychart.ReplayLoader;
+import de.reilem.replaychart.gbx.E_TmVersion;
+import de.reilem.replaychart.gbx.GbxInputSummary;
+import de.reilem.replaychart.gbx.ReplayMetadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent index of a replay library, e.g. all replays of a season spread over many folders.
+ * The index file is append-only: new and changed replays are added as records at the end, a later record of the same path
+ * replaces the earlier one and removed replays get a tombstone. The file is memory-mapped when opened and the replays are
+ * kept in columns with indexes sorted by race time, per map, per player and per version, so queries only touch matching replays.
+ */
+public final class LibraryIndex
+{
+    private static final int  MAGIC         = 0x52434C31; //RCL1
+    private static final int  INDEX_VERSION = 1;
+    private static final int  HEADER_SIZE   = 8;
+    private static final byte ENTRY         = 0;
+    private static final byte REMOVED       = 1;
+    private static final int  NO_VERSION    = 0xFF;
+    private static final int  FIXED_SIZE    = 3 + 4 + 4 + 8 + 8 + 8; //record fields before the strings
+
+    private static final int[] NONE = new int[0];
+
+    private final Path file;
+
+    private long validLength = 0; //end of the last complete record
+
+    //columns, one value per replay
+    private int      count = 0;
+    private String[] paths;
+    private byte[]   versions;
+    private String[] mapNames;
+    private String[] mapUids;
+    private String[] playerNames;
+    private int[]    raceTimes;
+    private byte[]   devices;
+    private int[]    respawns;
+    private long[]   sizes;
+    private long[]   lastModified;
+    private long[]   checksums;
+
+    //indexes, replay ids sorted by race time
+    private int[]                   byTime     = NONE;
+    private Map<String, int[]>      byMap      = new HashMap<>(); //name and uid
+    private Map<String, int[]>      byPlayer   = new HashMap<>();
+    private Map<E_TmVersion, int[]> byVersion  = new EnumMap<>( E_TmVersion.class );
+    private Map<String, Integer>    byPath     = new HashMap<>();
+    private Map<Long, Integer>      byChecksum = new HashMap<>();
+
+    /**
+     * opens the index, a missing file is created on the first update
+     *
+     * @param file
+     * @throws IOException
+     */
+    public LibraryIndex( Path file ) throws IOException
+    {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * @return index in the users home folder
+     * @throws IOException
+     */
+    public static LibraryIndex inUserHome() throws IOException
+    {
+        return new LibraryIndex( Paths.get( System.getProperty( "user.home" ), ".replaychart", "library.idx" ) );
+    }
+
+    /**
+     * @return amount of replays in the library
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * adds new replays and replaces changed ones, replays with the same size and modification time as their record are not read again.
+     * Replays with the content of a known replay (e.g. moved to another folder) are not parsed again
+     *
+     * @param files replay files
+     * @param workerCount amount of replays parsed at the same time
+     * @return amount of replays that were added or replaced
+     * @throws IOException
+     */
+    public synchronized int update( List<String> files, int workerCount ) throws IOException
+    {
+        List<String> changed = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for ( String f : files )
+        {
+            String path = normalize( f );
+            if ( !seen.add( path ) )
+            {
+                continue;
+            }
+            Integer id = byPath.get( path );
+            Path p = Paths.get( path );
+            if ( id == null || sizes[id] != Files.size( p ) || lastModified[id] != Files.getLastModifiedTime( p ).toMillis() )
+            {
+                changed.add( path );
+            }
+        }
+        List<byte[]> records = new ReplayLoader( workerCount ).load( changed, this::createRecord );
+        append( records );
+        return records.size();
+    }
+
+    /**
+     * removes all replays whose file doesn't exist anymore
+     *
+     * @return amount of removed replays
+     * @throws IOException
+     */
+    public synchronized int prune() throws IOException
+    {
+        List<byte[]> records = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( !Files.isRegularFile( Paths.get( paths[i] ) ) )
+            {
+                records.add( removedRecord( paths[i] ) );
+            }
+        }
+        append( records );
+        return records.size();
+    }
+
+    /**
+     * @param query
+     * @return matching replays, fastest first
+     */
+    public synchronized List<LibraryEntry> query( LibraryQuery query )
+    {
+        //start with the smallest index that applies, all of them are sorted by time
+        int[] candidates = byTime;
+        if ( query.getMap() != null )
+        {
+            candidates = byMap.getOrDefault( query.getMap(), NONE );
+        }
+        if ( query.getPlayer() != null )
+        {
+            candidates = smaller( candidates, byPlayer.getOrDefault( query.getPlayer(), NONE ) );
+        }
+        if ( query.getTmVersion() != null )
+        {
+            candidates = smaller( candidates, byVersion.getOrDefault( query.getTmVersion(), NONE ) );
+        }
+
+        List<LibraryEntry> result = new ArrayList<>();
+        int end = upperBound( candidates, query.getMaxTime() );
+        for ( int i = 0; i < end && result.size() < query.getLimit(); i++ )
+        {
+            int id = candidates[i];
+            if ( matches( id, query ) )
+            {
+                result.add( entry( id ) );
+            }
+        }
+        return result;
+    }
+
+    private boolean matches( int id, LibraryQuery query )
+    {
+        if ( query.getTmVersion() != null && versions[id] != query.getTmVersion().ordinal() )
+        {
+            return false;
+        }
+        if ( query.getMap() != null && !query.getMap().equals( mapNames[id] ) && !query.getMap().equals( mapUids[id] ) )
+        {
+            return false;
+        }
+        if ( query.getPlayer() != null && !query.getPlayer().equals( playerNames[id] ) )
+        {
+            return false;
+        }
+        if ( query.getInputDevice() != null && devices[id] != query.getInputDevice().ordinal() )
+        {
+            return false;
+        }
+        return respawns[id] <= query.getMaxRespawns();
+    }
+
+    private LibraryEntry entry( int id )
+    {
+        int version = versions[id] & 0xFF;
+        return new LibraryEntry( paths[id], version == NO_VERSION ? null : E_TmVersion.values()[version], mapNames[id], mapUids[id], playerNames[id],
+                raceTimes[id], E_InputDevice.values()[devices[id]], respawns[id] );
+    }
+
+    /**
+     * @param ids sorted by race time
+     * @param maxTime exclusive
+     * @return amount of ids faster than the given time
+     */
+    private int upperBound( int[] ids, int maxTime )
+    {
+        int low = 0;
+        int high = ids.length;
+        while ( low < high )
+        {
+            int mid = (low + high) >>> 1;
+            if ( raceTimes[ids[mid]] < maxTime )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] smaller( int[] a, int[] b )
+    {
+        return a.length <= b.length ? a : b;
+    }
+
+    /**
+     * reads the replay and encodes its record, called from the loader threads while the columns don't change
+     *
+     * @param path normalized path
+     * @return
+     * @throws IOException
+     */
+    private byte[] createRecord( String path ) throws IOException
+    {
+        Path p = Paths.get( path );
+        byte[] content = Files.readAllBytes( p );
+        long modified = Files.getLastModifiedTime( p ).toMillis();
+        CRC32 crc = new CRC32();
+        crc.update( content );
+
+        Integer known = byChecksum.get( crc.getValue() );
+        if ( known != null && sizes[known] == content.length ) //same replay, only the file changed
+        {
+            return record( ENTRY, path, versions[known], devices[known], raceTimes[known], respawns[known], content.length, modified, crc.getValue(),
+                    mapNames[known], mapUids[known], playerNames[known] );
+        }
+
+        GbxInputSummary inputs = GbxInputSummary.read( path ); //header and totals in one pass, the channels are not needed
+        ReplayMetadata metadata = inputs.getMetadata();
+        E_TmVersion version = metadata.getTmVersion() != null ? metadata.getTmVersion() : inputs.getTmVersion();
+        return record( ENTRY, path, (byte) (version == null ? NO_VERSION : version.ordinal()),
+                (byte) E_InputDevice.of( inputs.getPadSteers(), inputs.getKeyboardSteers() ).ordinal(),
+                inputs.getReplayTime() > 0 ? inputs.getReplayTime() : metadata.getRaceTime(), inputs.getRespawns(), content.length, modified,
+                crc.getValue(), metadata.getMapName(), metadata.getMapUid(), metadata.getPlayerName() );
+    }
+
+    private static byte[] removedRecord( String path )
+    {
+        return record( REMOVED, path, (byte) NO_VERSION, (byte) 0, 0, 0, 0, 0, 0, null, null, null );
+    }
+
+    /**
+     * encodes a record: length, type, version, device, race time, respawns, size, modification time, checksum, path, map name, map uid, player
+     *
+     * @return
+     */
+    private static byte[] record( byte type, String path, byte version, byte device, int raceTime, int respawns, long size, long modified, long checksum,
+            String mapName, String mapUid, String playerName )
+    {
+        byte[][] strings = { bytes( path ), bytes( mapName ), bytes( mapUid ), bytes( playerName ) };
+        int length = FIXED_SIZE;
+        for ( byte[] s : strings )
+        {
+            length += 4 + (s == null ? 0 : s.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate( 4 + length );
+        record.putInt( length );
+        record.put( type );
+        record.put( version );
+        record.put( device );
+        record.putInt( raceTime );
+        record.putInt( respawns );
+        record.putLong( size );
+        record.putLong( modified );
+        record.putLong( checksum );
+        for ( byte[] s : strings )
+        {
+            record.putInt( s == null ? -1 : s.length );
+            if ( s != null )
+            {
+                record.put( s );
+            }
+        }
+        return record.array();
+    }
+
+    private static byte[] bytes( String s )
+    {
+        return s == null ? null : s.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private static String getString( ByteBuffer buffer, Map<String, String> pool )
+    {
+        int length = buffer.getInt();
+        if ( length < 0 )
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get( bytes );
+        String s = new String( bytes, StandardCharsets.UTF_8 );
+        return pool == null ? s : pool.computeIfAbsent( s, k -> k );
+    }
+
+    /**
+     * appends the records and reloads the index
+     *
+     * @param records
+     * @throws IOException
+     */
+    private void append( List<byte[]> records ) throws IOException
+    {
+        if ( records.isEmpty() )
+        {
+            return;
+        }
+        Files.createDirectories( file.toAbsolutePath().getParent() );
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+        {
+            if ( validLength < HEADER_SIZE ) //new or unreadable index
+            {
+                channel.truncate( 0 );
+                ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+                header.putInt( MAGIC ).putInt( INDEX_VERSION ).flip();
+                channel.write( header, 0 );
+                validLength = HEADER_SIZE;
+            }
+            else if ( channel.size() > validLength ) //drop a record that was cut off
+            {
+                channel.truncate( validLength );
+            }
+            long position = validLength;
+            for ( byte[] record : records )
+            {
+                ByteBuffer buffer = ByteBuffer.wrap( record );
+                while ( buffer.hasRemaining() )
+                {
+                    position += channel.write( buffer, position );
+                }
+            }
+            channel.force( false );
+        }
+        load();
+    }
+
+    /**
+     * maps the index file and rebuilds the columns and indexes
+     *
+     * @throws IOException
+     */
+    private void load() throws IOException
+    {
+        //newest record of each path, in file order
+        Map<String, Integer> latest = new LinkedHashMap<>(); //path -> record offset
+        MappedByteBuffer buffer = null;
+        validLength = 0;
+        if ( Files.isRegularFile( file ) )
+        {
+            try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+            {
+                long size = channel.size();
+                if ( size >= HEADER_SIZE && size <= Integer.MAX_VALUE )
+                {
+                    buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+                }
+            }
+        }
+        if ( buffer != null && buffer.getInt( 0 ) == MAGIC && buffer.getInt( 4 ) == INDEX_VERSION )
+        {
+            int position = HEADER_SIZE;
+            while ( position + 4 <= buffer.limit() )
+            {
+                int length = buffer.getInt( position );
+                if ( length <= 0 || length > buffer.limit() - position - 4 ) //cut off by a crash
+                {
+                    break;
+                }
+                ByteBuffer record = recordAt( buffer, position );
+                byte type = record.get();
+                record.position( FIXED_SIZE );
+                String path = getString( record, null );
+                latest.remove( path ); //keep file order of the newest record
+                if ( type == ENTRY )
+                {
+                    latest.put( path, position );
+                }
+                position += 4 + length;
+            }
+            validLength = position;
+        }
+
+        count = latest.size();
+        paths = new String[count];
+        versions = new byte[count];
+        mapNames = new String[count];
+        mapUids = new String[count];
+        playerNames = new String[count];
+        raceTimes = new int[count];
+        devices = new byte[count];
+        respawns = new int[count];
+        sizes = new long[count];
+        lastModified = new long[count];
+        checksums = new long[count];
+        byPath = new HashMap<>();
+        byChecksum = new HashMap<>();
+
+        Map<String, String> pool = new HashMap<>();
+        int id = 0;
+        for ( int position : latest.values() )
+        {
+            ByteBuffer record = recordAt( buffer, position );
+            record.get(); //type
+            versions[id] = record.get();
+            devices[id] = record.get();
+            raceTimes[id] = record.getInt();
+            respawns[id] = record.getInt();
+            sizes[id] = record.getLong();
+            lastModified[id] = record.getLong();
+            checksums[id] = record.getLong();
+            paths[id] = getString( record, null );
+            mapNames[id] = getString( record, pool );
+            mapUids[id] = getString( record, pool );
+            playerNames[id] = getString( record, pool );
+            byPath.put( paths[id], id );
+            byChecksum.put( checksums[id], id );
+            id++;
+        }
+        buildIndexes();
+    }
+
+    private static ByteBuffer recordAt( ByteBuffer buffer, int position )
+    {
+        ByteBuffer record = buffer.duplicate();
+        record.position( position + 4 );
+        record.limit( position + 4 + buffer.getInt( position ) );
+        return record.slice();
+    }
+
+    private void buildIndexes()
+    {
+        Integer[] order = new Integer[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            order[i] = i;
+        }
+        Arrays.sort( order, Comparator.<Integer>comparingInt( i -> raceTimes[i] ).thenComparing( i -> paths[i] ) );
+        byTime = new int[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            byTime[i] = order[i];
+        }
+
+        Map<String, List<Integer>> maps = new HashMap<>();
+        Map<String, List<Integer>> players = new HashMap<>();
+        Map<E_TmVersion, List<Integer>> tmVersions = new EnumMap<>( E_TmVersion.class );
+        for ( int id : byTime )
+        {
+            if ( mapNames[id] != null )
+            {
+                maps.computeIfAbsent( mapNames[id], k -> new ArrayList<>() ).add( id );
+            }
+            if ( mapUids[id] != null && !mapUids[id].equals( mapNames[id] ) )
+            {
+                maps.computeIfAbsent( mapUids[id], k -> new ArrayList<>() ).add( id );
+            }
+            if ( playerNames[id] != null )
+            {
+                players.computeIfAbsent( playerNames[id], k -> new ArrayList<>() ).add( id );
+            }
+            int version = versions[id] & 0xFF;
+            if ( version != NO_VERSION )
+            {
+                tmVersions.computeIfAbsent( E_TmVersion.values()[version], k -> new ArrayList<>() ).add( id );
+            }
+        }
+        byMap = toArrays( maps, new HashMap<>() );
+        byPlayer = toArrays( players, new HashMap<>() );
+        byVersion = toArrays( tmVersions, new EnumMap<>( E_TmVersion.class ) );
+    }
+
+    private static <K> Map<K, int[]> toArrays( Map<K, List<Integer>> lists, Map<K, int[]> arrays )
+    {
+        lists.forEach( ( key, ids ) -> arrays.put( key, ids.stream().mapToInt( Integer::intValue ).toArray() ) );
+        return arrays;
+    }
+
+    private static String normalize( String file )
+    {
+        return Paths.get( file ).toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,151 @@
+package de.reilem.replaychart.library;
+
+import de.reilem.replaychart.gbx.E_TmVersion;
+
+/**
+ * Filter for {@link LibraryIndex#query(LibraryQuery)}, unset conditions match every replay.
+ * Results are always sorted by race time, fastest first.
+ */
+public final class LibraryQuery
+{
+    private E_TmVersion   tmVersion   = null;
+    private String        map         = null;
+    private String        player      = null;
+    private int           maxTime     = Integer.MAX_VALUE;
+    private E_InputDevice inputDevice = null;
+    private int           maxRespawns = Integer.MAX_VALUE;
+    private int           limit       = Integer.MAX_VALUE;
+
+    /**
+     * parses a comma separated list of conditions, e.g. "version=TM2,map=A01-Race,time=45000,input=pad,limit=10"
+     *
+     * @param text keys: version, map (name or uid), player, time (max ms, exclusive), input, respawns (max), limit
+     * @return
+     */
+    public static LibraryQuery parse( String text )
+    {
+        LibraryQuery query = new LibraryQuery();
+        for ( String condition : text.split( "," ) )
+        {
+            int separator = condition.indexOf( '=' );
+            if ( separator < 0 )
+            {
+                throw new IllegalArgumentException( "Invalid query condition: " + condition );
+            }
+            String key = condition.substring( 0, separator ).trim().toLowerCase();
+            String value = condition.substring( separator + 1 ).trim();
+            switch ( key )
+            {
+                case "version":
+                    query.tmVersion( E_TmVersion.valueOf( value.toUpperCase() ) );
+                    break;
+                case "map":
+                    query.map( value );
+                    break;
+                case "player":
+                    query.player( value );
+                    break;
+                case "time":
+                    query.maxTime( Integer.parseInt( value ) );
+                    break;
+                case "input":
+                    query.inputDevice( E_InputDevice.valueOf( value.toUpperCase() ) );
+                    break;
+                case "respawns":
+                    query.maxRespawns( Integer.parseInt( value ) );
+                    break;
+                case "limit":
+                    query.limit( Integer.parseInt( value ) );
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Unknown query key: " + key );
+            }
+        }
+        return query;
+    }
+
+    public LibraryQuery tmVersion( E_TmVersion tmVersion )
+    {
+        this.tmVersion = tmVersion;
+        return this;
+    }
+
+    /**
+     * @param map name or uid
+     * @return
+     */
+    public LibraryQuery map( String map )
+    {
+        this.map = map;
+        return this;
+    }
+
+    public LibraryQuery player( String player )
+    {
+        this.player = player;
+        return this;
+    }
+
+    /**
+     * @param maxTime in ms, exclusive
+     * @return
+     */
+    public LibraryQuery maxTime( int maxTime )
+    {
+        this.maxTime = maxTime;
+        return this;
+    }
+
+    public LibraryQuery inputDevice( E_InputDevice inputDevice )
+    {
+        this.inputDevice = inputDevice;
+        return this;
+    }
+
+    public LibraryQuery maxRespawns( int maxRespawns )
+    {
+        this.maxRespawns = maxRespawns;
+        return this;
+    }
+
+    public LibraryQuery limit( int limit )
+    {
+        this.limit = limit;
+        return this;
+    }
+
+    public E_TmVersion getTmVersion()
+    {
+        return tmVersion;
+    }
+
+    public String getMap()
+    {
+        return map;
+    }
+
+    public String getPlayer()
+    {
+        return player;
+    }
+
+    public int getMaxTime()
+    {
+        return maxTime;
+    }
+
+    public E_InputDevice getInputDevice()
+    {
+        return inputDevice;
+    }
+
+    public int getMaxRespawns()
+    {
+        return maxRespawns;
+    }
+
+    public int getLimit()
+    {
+        return limit;
+    }
+}
@@ -0,0 +1,52 @@
+package de.reilem.replaychart.profile;
+
+/**
+ * Measured steps of reading and charting replays
+ */
+public enum E_Stage
+{
+    /**
+     * reading replay files from disk
+     */
+    READ,
+    /**
+     * looking up parsed replays in the cache
+     */
+    CACHE,
+    /**
+     * parsing the gbx header
+     */
+    HEADER,
+    /**
+     * lzo decompression of the gbx body
+     */
+    DECOMPRESS,
+    /**
+     * parsing the input block of the body
+     */
+    INPUTS,
+    /**
+     * turning the inputs into channels, see {@link de.reilem.replaychart.gbx.GbxReplayBuilder}
+     */
+    BUILD,
+    /**
+     * reading only the metadata of a replay, see {@link de.reilem.replaychart.gbx.GbxHeaderScanner}
+     */
+    SCAN,
+    /**
+     * parsing a donadigo script
+     */
+    SCRIPT,
+    /**
+     * decoding a replay of an archive
+     */
+    ARCHIVE,
+    /**
+     * building a chart
+     */
+    CHART,
+    /**
+     * writing a chart image
+     */
+    EXPORT;
+}
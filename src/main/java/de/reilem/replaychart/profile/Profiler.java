@@ -0,0 +1,180 @@
+package de.reilem.replaychart.profile;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures count, latency, processed bytes and allocations of each {@link E_Stage}.
+ * Disabled by default, then {@link #start(E_Stage)} and {@link #stop(E_Stage, long)} return right away.
+ * A stage is measured per thread, different stages may be nested but the same stage must not.
+ */
+public final class Profiler
+{
+    public static final String OBJECT_NAME = "de.reilem.replaychart:type=Profiler";
+
+    private static final E_Stage[]    STAGES = E_Stage.values();
+    private static final StageStats[] STATS  = new StageStats[STAGES.length];
+
+    /**
+     * start time and allocated bytes of the running stages of the thread
+     */
+    private static final ThreadLocal<long[]> STARTS = ThreadLocal.withInitial( () -> new long[STAGES.length * 2] );
+
+    private static volatile boolean                          enabled = false;
+    private static          com.sun.management.ThreadMXBean allocations;
+
+    static
+    {
+        for ( int i = 0; i < STATS.length; i++ )
+        {
+            STATS[i] = new StageStats();
+        }
+    }
+
+    private Profiler()
+    {
+    }
+
+    /**
+     * starts measuring, registers the jmx bean and prints the summary when the jvm exits
+     */
+    public static synchronized void enable()
+    {
+        if ( enabled )
+        {
+            return;
+        }
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if ( threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported() )
+        {
+            allocations = (com.sun.management.ThreadMXBean) threads;
+            allocations.setThreadAllocatedMemoryEnabled( true );
+        }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( new StandardMBean( new Bean(), ProfilerMXBean.class, true ),
+                    new ObjectName( OBJECT_NAME ) );
+        }
+        catch ( Exception e )
+        {
+            System.out.println( "Unable to register profiler bean: " + e );
+        }
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> System.out.print( report() ), "profiler-report" ) );
+        enabled = true;
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public static void start( E_Stage stage )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+        long[] starts = STARTS.get();
+        starts[stage.ordinal() * 2 + 1] = allocatedBytes();
+        starts[stage.ordinal() * 2] = System.nanoTime();
+    }
+
+    public static void stop( E_Stage stage )
+    {
+        stop( stage, 0 );
+    }
+
+    /**
+     * @param stage
+     * @param bytes amount of bytes read, decompressed or written by the stage
+     */
+    public static void stop( E_Stage stage, long bytes )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+        long end = System.nanoTime();
+        long[] starts = STARTS.get();
+        long allocated = allocations == null ? 0 : allocatedBytes() - starts[stage.ordinal() * 2 + 1];
+        STATS[stage.ordinal()].record( end - starts[stage.ordinal() * 2], bytes, allocated );
+    }
+
+    /**
+     * @return counters of all stages that ran at least once
+     */
+    public static List<StageSummary> summarize()
+    {
+        List<StageSummary> summaries = new ArrayList<>();
+        for ( E_Stage stage : STAGES )
+        {
+            StageSummary summary = STATS[stage.ordinal()].summarize( stage );
+            if ( summary.getCount() > 0 )
+            {
+                summaries.add( summary );
+            }
+        }
+        return summaries;
+    }
+
+    public static void reset()
+    {
+        for ( StageStats stats : STATS )
+        {
+            stats.reset();
+        }
+    }
+
+    /**
+     * @return table of all stages, times in ms summed up over all threads
+     */
+    public static String report()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append( String.format( Locale.ROOT, "%-11s %8s %10s %9s %9s %9s %9s %9s %10s %10s%n", "Stage", "Count", "Total ms", "Mean ms", "p50 ms",
+                "p90 ms", "p99 ms", "Max ms", "MB", allocations == null ? "-" : "Alloc MB" ) );
+        for ( StageSummary s : summarize() )
+        {
+            report.append( String.format( Locale.ROOT, "%-11s %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %10.2f %10s%n", s.getStage(), s.getCount(),
+                    s.getTotalNanos() / 1e6, s.getMeanNanos() / 1e6, s.getP50Nanos() / 1e6, s.getP90Nanos() / 1e6, s.getP99Nanos() / 1e6,
+                    s.getMaxNanos() / 1e6, s.getBytes() / 1e6, allocations == null ? "-" : String.format( Locale.ROOT, "%.2f", s.getAllocatedBytes() / 1e6 ) ) );
+        }
+        return report.toString();
+    }
+
+    private static long allocatedBytes()
+    {
+        return allocations == null ? 0 : allocations.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+    private static final class Bean implements ProfilerMXBean
+    {
+        @Override
+        public List<StageSummary> getStages()
+        {
+            return summarize();
+        }
+
+        @Override
+        public String getReport()
+        {
+            return report();
+        }
+
+        @Override
+        public boolean isAllocationMeasured()
+        {
+            return allocations != null;
+        }
+
+        @Override
+        public void reset()
+        {
+            Profiler.reset();
+        }
+    }
+}
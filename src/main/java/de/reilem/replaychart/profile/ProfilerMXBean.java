@@ -0,0 +1,23 @@
+package de.reilem.replaychart.profile;
+
+import java.util.List;
+
+/**
+ * Profiler counters as seen by jconsole or other jmx clients, registered as {@value Profiler#OBJECT_NAME}
+ */
+public interface ProfilerMXBean
+{
+    List<StageSummary> getStages();
+
+    /**
+     * @return the summary table printed at the end of a run
+     */
+    String getReport();
+
+    boolean isAllocationMeasured();
+
+    /**
+     * clears all counters, e.g. to measure one batch of a watch session
+     */
+    void reset();
+}
@@ -0,0 +1,104 @@
+package de.reilem.replaychart.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one stage, updated concurrently by the worker threads.
+ * Latencies are kept in a log-linear histogram with 8 buckets per power of two, percentiles are accurate to 12.5%.
+ */
+final class StageStats
+{
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS    = 3;
+
+    private final LongAdder       count     = new LongAdder();
+    private final LongAdder       nanos     = new LongAdder();
+    private final LongAdder       bytes     = new LongAdder();
+    private final LongAdder       allocated = new LongAdder();
+    private final AtomicLong      maxNanos  = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray( bucket( Long.MAX_VALUE ) + 1 );
+
+    void record( long duration, long byteCount, long allocatedBytes )
+    {
+        duration = Math.max( 0, duration );
+        count.increment();
+        nanos.add( duration );
+        bytes.add( byteCount );
+        allocated.add( allocatedBytes );
+        histogram.incrementAndGet( bucket( duration ) );
+        long max = maxNanos.get();
+        while ( duration > max && !maxNanos.compareAndSet( max, duration ) )
+        {
+            max = maxNanos.get();
+        }
+    }
+
+    void reset()
+    {
+        count.reset();
+        nanos.reset();
+        bytes.reset();
+        allocated.reset();
+        maxNanos.set( 0 );
+        for ( int i = 0; i < histogram.length(); i++ )
+        {
+            histogram.set( i, 0 );
+        }
+    }
+
+    StageSummary summarize( E_Stage stage )
+    {
+        long[] buckets = new long[histogram.length()];
+        long total = 0;
+        for ( int i = 0; i < buckets.length; i++ )
+        {
+            buckets[i] = histogram.get( i );
+            total += buckets[i];
+        }
+        long max = maxNanos.get();
+        return new StageSummary( stage.name(), count.sum(), nanos.sum(), Math.min( max, percentile( buckets, total, 0.5 ) ),
+                Math.min( max, percentile( buckets, total, 0.9 ) ), Math.min( max, percentile( buckets, total, 0.99 ) ), max, bytes.sum(), allocated.sum() );
+    }
+
+    /**
+     * @return upper bound of the bucket containing the given share of all values, in ns
+     */
+    private static long percentile( long[] buckets, long total, double share )
+    {
+        long rank = (long) Math.ceil( total * share );
+        long seen = 0;
+        for ( int i = 0; i < buckets.length; i++ )
+        {
+            seen += buckets[i];
+            if ( seen >= rank && seen > 0 )
+            {
+                return upperBound( i );
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket( long value )
+    {
+        if ( value < SUB_BUCKETS )
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound( int bucket )
+    {
+        if ( bucket < SUB_BUCKETS )
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
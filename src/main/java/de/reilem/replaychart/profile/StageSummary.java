@@ -0,0 +1,89 @@
+package de.reilem.replaychart.profile;
+
+/**
+ * Snapshot of the counters of one stage, also the composite type of {@link ProfilerMXBean#getStages()}
+ */
+public final class StageSummary
+{
+    private final String stage;
+    private final long   count;
+    private final long   totalNanos;
+    private final long   p50Nanos;
+    private final long   p90Nanos;
+    private final long   p99Nanos;
+    private final long   maxNanos;
+    private final long   bytes;
+    private final long   allocatedBytes;
+
+    StageSummary( String stage, long count, long totalNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos, long bytes, long allocatedBytes )
+    {
+        this.stage = stage;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+        this.bytes = bytes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getStage()
+    {
+        return stage;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return summed up time of all threads
+     */
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    public long getMeanNanos()
+    {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getP50Nanos()
+    {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos()
+    {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos()
+    {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    /**
+     * @return bytes read, decompressed or written by the stage
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return heap allocated by the stage, 0 if the jvm doesn't measure allocations
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+}
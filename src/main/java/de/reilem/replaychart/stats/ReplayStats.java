@@ -0,0 +1,180 @@
+package de.reilem.replaychart.stats;
+
+import de.reilem.replaychart.gbx.GbxInputExtractor;
+import de.reilem.replaychart.gbx.GbxSteeringInput;
+import de.reilem.replaychart.gbx.GbxTimelineListener;
+import de.reilem.replaychart.gbx.ReplayMetadata;
+
+import java.io.IOException;
+
+/**
+ * Numeric summary of the inputs of one replay, collected while the replay is read without building its channels
+ */
+public final class ReplayStats extends GbxTimelineListener
+{
+    private static final double REVERSAL_THRESHOLD = GbxSteeringInput.MAX / 10; //ignore small corrections around the center
+
+    private String file;
+    private String playerName;
+    private String mapName;
+    private String mapUid;
+    private int    throttleTime      = 0;
+    private int    brakeTime         = 0;
+    private int    steeringReversals = 0;
+    private int    respawns          = 0;
+    private int    padSteers         = 0;
+    private int    keyboardSteers    = 0;
+    private long   steps             = 0;
+    private double absSteering       = 0.0;
+    private int    direction         = 0;
+
+    private ReplayStats( String file )
+    {
+        super( false );
+        this.file = file;
+    }
+
+    /**
+     * reads header and inputs of the given replay in a single pass
+     *
+     * @param replayFilePath
+     * @return
+     * @throws IOException
+     */
+    public static ReplayStats read( String replayFilePath ) throws IOException
+    {
+        ReplayStats stats = new ReplayStats( replayFilePath );
+        GbxInputExtractor.readInputs( replayFilePath, stats );
+        return stats;
+    }
+
+    @Override
+    public void metadata( ReplayMetadata metadata )
+    {
+        file = metadata.getFile();
+        playerName = metadata.getPlayerName();
+        mapName = metadata.getMapName();
+        mapUid = metadata.getMapUid();
+    }
+
+    @Override
+    protected void respawn( int time )
+    {
+        respawns++;
+    }
+
+    @Override
+    protected void timestamp( double acceleration, double brake, double steering, boolean pad )
+    {
+        if ( acceleration != 0.0 )
+        {
+            throttleTime += 10;
+        }
+        if ( brake != 0.0 )
+        {
+            brakeTime += 10;
+        }
+        if ( pad )
+        {
+            padSteers++;
+        }
+        else if ( steering != 0.0 )
+        {
+            keyboardSteers++;
+        }
+
+        steps++;
+        absSteering += Math.abs( steering );
+        int stepDirection = steering > REVERSAL_THRESHOLD ? 1 : steering < -REVERSAL_THRESHOLD ? -1 : 0;
+        if ( stepDirection != 0 )
+        {
+            if ( direction != 0 && direction != stepDirection )
+            {
+                steeringReversals++;
+            }
+            direction = stepDirection;
+        }
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    public String getPlayerName()
+    {
+        return playerName;
+    }
+
+    public String getMapName()
+    {
+        return mapName;
+    }
+
+    public String getMapUid()
+    {
+        return mapUid;
+    }
+
+    /**
+     * @return in ms
+     */
+    public int getThrottleTime()
+    {
+        return throttleTime;
+    }
+
+    /**
+     * @return in ms
+     */
+    public int getBrakeTime()
+    {
+        return brakeTime;
+    }
+
+    /**
+     * @return share of the replay spent on the throttle, 0-1
+     */
+    public double getThrottleShare()
+    {
+        return getReplayTime() <= 0 ? 0.0 : (double) throttleTime / getReplayTime();
+    }
+
+    /**
+     * @return share of the replay spent on the brake, 0-1
+     */
+    public double getBrakeShare()
+    {
+        return getReplayTime() <= 0 ? 0.0 : (double) brakeTime / getReplayTime();
+    }
+
+    /**
+     * @return how often the steering changed from left to right or back
+     */
+    public int getSteeringReversals()
+    {
+        return steeringReversals;
+    }
+
+    /**
+     * @return average steering deflection, 0 (straight) - 1 (full steer)
+     */
+    public double getMeanAbsSteering()
+    {
+        return steps == 0 ? 0.0 : absSteering / steps / GbxSteeringInput.MAX;
+    }
+
+    public int getRespawns()
+    {
+        return respawns;
+    }
+
+    /**
+     * @return share of steering steps done with a pad, 0-1
+     */
+    public double getPadRatio()
+    {
+        int steers = padSteers + keyboardSteers;
+        return steers == 0 ? 0.0 : (double) padSteers / steers;
+    }
+}
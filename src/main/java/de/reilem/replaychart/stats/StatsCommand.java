@@ -0,0 +1,38 @@
+package de.reilem.replaychart.stats;
+
+import de.reilem.replaychart.ReplayLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Statistics mode of the command line, no window is opened
+ */
+public final class StatsCommand
+{
+    private StatsCommand()
+    {
+    }
+
+    /**
+     * computes the statistics of all given replays and writes them with summaries per map and player
+     *
+     * @param arguments replay files or a single folder
+     * @param file *.json for JSON, CSV otherwise
+     * @param workerCount
+     */
+    public static void writeStatistics( List<String> arguments, File file, int workerCount )
+    {
+        List<ReplayStats> stats = new ReplayLoader( workerCount ).load( ReplayLoader.listReplayFiles( arguments, true ), ReplayStats::read );
+        try
+        {
+            StatsWriter.write( file, stats, StatsSummary.groupBy( stats, StatsSummary::mapKey ), StatsSummary.groupBy( stats, StatsSummary::playerKey ) );
+            System.out.println( "Wrote statistics of " + stats.size() + " replays to " + file.getAbsolutePath() );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "Failed to write statistics: " + e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.reilem.replaychart.stats;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Sums up the statistics of several replays, e.g. all replays of one map or one player.
+ * Partial summaries of different threads are merged, so large libraries are folded in parallel.
+ */
+public final class StatsSummary
+{
+    private int    count          = 0;
+    private int    bestTime       = Integer.MAX_VALUE;
+    private long   totalTime      = 0;
+    private double throttleShares = 0.0;
+    private double brakeShares    = 0.0;
+    private long   reversals      = 0;
+    private double absSteering    = 0.0;
+    private long   respawns       = 0;
+    private double padRatios      = 0.0;
+
+    public void add( ReplayStats stats )
+    {
+        count++;
+        if ( stats.getReplayTime() > 0 )
+        {
+            bestTime = Math.min( bestTime, stats.getReplayTime() );
+        }
+        totalTime += stats.getReplayTime();
+        throttleShares += stats.getThrottleShare();
+        brakeShares += stats.getBrakeShare();
+        reversals += stats.getSteeringReversals();
+        absSteering += stats.getMeanAbsSteering();
+        respawns += stats.getRespawns();
+        padRatios += stats.getPadRatio();
+    }
+
+    /**
+     * adds the other summary to this one
+     *
+     * @param other
+     * @return this
+     */
+    public StatsSummary merge( StatsSummary other )
+    {
+        count += other.count;
+        bestTime = Math.min( bestTime, other.bestTime );
+        totalTime += other.totalTime;
+        throttleShares += other.throttleShares;
+        brakeShares += other.brakeShares;
+        reversals += other.reversals;
+        absSteering += other.absSteering;
+        respawns += other.respawns;
+        padRatios += other.padRatios;
+        return this;
+    }
+
+    /**
+     * folds the statistics in parallel into one summary per key
+     *
+     * @param stats
+     * @param key e.g. map or player name
+     * @return summaries sorted by key
+     */
+    public static Map<String, StatsSummary> groupBy( List<ReplayStats> stats, Function<ReplayStats, String> key )
+    {
+        return new TreeMap<>( stats.parallelStream().collect( Collectors.groupingByConcurrent( key,
+                Collector.of( StatsSummary::new, StatsSummary::add, StatsSummary::merge ) ) ) );
+    }
+
+    /**
+     * @param stats
+     * @return map name, uid if the name is unknown
+     */
+    public static String mapKey( ReplayStats stats )
+    {
+        return stats.getMapName() != null ? stats.getMapName() : stats.getMapUid() != null ? stats.getMapUid() : "-";
+    }
+
+    /**
+     * @param stats
+     * @return player name
+     */
+    public static String playerKey( ReplayStats stats )
+    {
+        return stats.getPlayerName() != null ? stats.getPlayerName() : "-";
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return in ms, -1 if no replay has a time
+     */
+    public int getBestTime()
+    {
+        return bestTime == Integer.MAX_VALUE ? -1 : bestTime;
+    }
+
+    /**
+     * @return in ms
+     */
+    public double getMeanTime()
+    {
+        return mean( totalTime );
+    }
+
+    public double getMeanThrottleShare()
+    {
+        return mean( throttleShares );
+    }
+
+    public double getMeanBrakeShare()
+    {
+        return mean( brakeShares );
+    }
+
+    public double getMeanSteeringReversals()
+    {
+        return mean( reversals );
+    }
+
+    public double getMeanAbsSteering()
+    {
+        return mean( absSteering );
+    }
+
+    public double getMeanRespawns()
+    {
+        return mean( respawns );
+    }
+
+    public double getMeanPadRatio()
+    {
+        return mean( padRatios );
+    }
+
+    private double mean( double sum )
+    {
+        return count == 0 ? 0.0 : sum / count;
+    }
+}
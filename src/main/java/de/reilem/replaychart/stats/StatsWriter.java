@@ -0,0 +1,236 @@
+package de.reilem.replaychart.stats;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes replay statistics and their summaries per map and player as CSV or JSON (chosen by the file extension)
+ */
+public final class StatsWriter
+{
+    private static final String[] COLUMNS = { "scope", "name", "map", "player", "count", "best_time_ms", "mean_time_ms", "throttle_pct", "brake_pct",
+            "steering_reversals", "mean_abs_steering", "respawns", "pad_ratio" };
+
+    private StatsWriter()
+    {
+    }
+
+    /**
+     * @param file *.json for JSON, CSV otherwise
+     * @param replays
+     * @param maps summaries per map
+     * @param players summaries per player
+     * @throws IOException
+     */
+    public static void write( File file, List<ReplayStats> replays, Map<String, StatsSummary> maps, Map<String, StatsSummary> players ) throws IOException
+    {
+        try ( BufferedWriter writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8 ) )
+        {
+            if ( file.getName().toLowerCase().endsWith( ".json" ) )
+            {
+                writeJson( writer, replays, maps, players );
+            }
+            else
+            {
+                writeCsv( writer, replays, maps, players );
+            }
+        }
+    }
+
+    private static void writeCsv( Writer writer, List<ReplayStats> replays, Map<String, StatsSummary> maps, Map<String, StatsSummary> players )
+            throws IOException
+    {
+        writer.write( String.join( ",", COLUMNS ) + "\n" );
+        for ( ReplayStats r : replays )
+        {
+            writeCsvRow( writer, replayRow( r ) );
+        }
+        for ( Map.Entry<String, StatsSummary> map : maps.entrySet() )
+        {
+            writeCsvRow( writer, summaryRow( "map", map.getKey(), map.getKey(), "", map.getValue() ) );
+        }
+        for ( Map.Entry<String, StatsSummary> player : players.entrySet() )
+        {
+            writeCsvRow( writer, summaryRow( "player", player.getKey(), "", player.getKey(), player.getValue() ) );
+        }
+    }
+
+    private static void writeCsvRow( Writer writer, List<Object> row ) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        for ( Object value : row )
+        {
+            if ( line.length() > 0 )
+            {
+                line.append( ',' );
+            }
+            if ( value instanceof String )
+            {
+                String text = (String) value;
+                if ( text.indexOf( ',' ) >= 0 || text.indexOf( '"' ) >= 0 || text.indexOf( '\n' ) >= 0 )
+                {
+                    text = "\"" + text.replace( "\"", "\"\"" ) + "\"";
+                }
+                line.append( text );
+            }
+            else
+            {
+                line.append( format( value ) );
+            }
+        }
+        writer.write( line.append( '\n' ).toString() );
+    }
+
+    private static void writeJson( Writer writer, List<ReplayStats> replays, Map<String, StatsSummary> maps, Map<String, StatsSummary> players )
+            throws IOException
+    {
+        writer.write( "{\n  \"replays\": [" );
+        String separator = "\n";
+        for ( ReplayStats r : replays )
+        {
+            writer.write( separator );
+            writeJsonObject( writer, replayRow( r ) );
+            separator = ",\n";
+        }
+        writer.write( "\n  ],\n  \"maps\": [" );
+        separator = "\n";
+        for ( Map.Entry<String, StatsSummary> map : maps.entrySet() )
+        {
+            writer.write( separator );
+            writeJsonObject( writer, summaryRow( "map", map.getKey(), map.getKey(), null, map.getValue() ) );
+            separator = ",\n";
+        }
+        writer.write( "\n  ],\n  \"players\": [" );
+        separator = "\n";
+        for ( Map.Entry<String, StatsSummary> player : players.entrySet() )
+        {
+            writer.write( separator );
+            writeJsonObject( writer, summaryRow( "player", player.getKey(), null, player.getKey(), player.getValue() ) );
+            separator = ",\n";
+        }
+        writer.write( "\n  ]\n}\n" );
+    }
+
+    private static void writeJsonObject( Writer writer, List<Object> row ) throws IOException
+    {
+        StringBuilder object = new StringBuilder( "    {" );
+        for ( int i = 1; i < COLUMNS.length; i++ ) //scope is given by the enclosing array
+        {
+            if ( i > 1 )
+            {
+                object.append( ", " );
+            }
+            object.append( '"' ).append( COLUMNS[i] ).append( "\": " );
+            Object value = row.get( i );
+            if ( value == null )
+            {
+                object.append( "null" );
+            }
+            else if ( value instanceof String )
+            {
+                object.append( '"' ).append( escapeJson( (String) value ) ).append( '"' );
+            }
+            else
+            {
+                object.append( format( value ) );
+            }
+        }
+        writer.write( object.append( '}' ).toString() );
+    }
+
+    private static List<Object> replayRow( ReplayStats r )
+    {
+        List<Object> row = new ArrayList<>();
+        row.add( "replay" );
+        row.add( r.getFile() );
+        row.add( StatsSummary.mapKey( r ) );
+        row.add( StatsSummary.playerKey( r ) );
+        row.add( 1 );
+        row.add( r.getReplayTime() );
+        row.add( (double) r.getReplayTime() );
+        row.add( r.getThrottleShare() * 100 );
+        row.add( r.getBrakeShare() * 100 );
+        row.add( (double) r.getSteeringReversals() );
+        row.add( r.getMeanAbsSteering() );
+        row.add( (double) r.getRespawns() );
+        row.add( r.getPadRatio() );
+        return row;
+    }
+
+    private static List<Object> summaryRow( String scope, String name, String map, String player, StatsSummary s )
+    {
+        List<Object> row = new ArrayList<>();
+        row.add( scope );
+        row.add( name );
+        row.add( map );
+        row.add( player );
+        row.add( s.getCount() );
+        row.add( s.getBestTime() );
+        row.add( s.getMeanTime() );
+        row.add( s.getMeanThrottleShare() * 100 );
+        row.add( s.getMeanBrakeShare() * 100 );
+        row.add( s.getMeanSteeringReversals() );
+        row.add( s.getMeanAbsSteering() );
+        row.add( s.getMeanRespawns() );
+        row.add( s.getMeanPadRatio() );
+        return row;
+    }
+
+    /**
+     * locale independent, doubles with up to 4 decimals
+     */
+    private static String format( Object value )
+    {
+        if ( value instanceof Double )
+        {
+            String text = String.format( Locale.ROOT, "%.4f", (Double) value );
+            text = text.indexOf( '.' ) >= 0 ? text.replaceAll( "0+$", "" ) : text;
+            return text.endsWith( "." ) ? text.substring( 0, text.length() - 1 ) : text;
+        }
+        return String.valueOf( value );
+    }
+
+    private static String escapeJson( String text )
+    {
+        StringBuilder escaped = new StringBuilder( text.length() );
+        for ( char c : text.toCharArray() )
+        {
+            switch ( c )
+            {
+                case '"':
+                    escaped.append( "\\\"" );
+                    break;
+                case '\\':
+                    escaped.append( "\\\\" );
+                    break;
+                case '\n':
+                    escaped.append( "\\n" );
+                    break;
+                case '\r':
+                    escaped.append( "\\r" );
+                    break;
+                case '\t':
+                    escaped.append( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 )
+                    {
+                        escaped.append( String.format( "\\u%04x", (int) c ) );
+                    }
+                    else
+                    {
+                        escaped.append( c );
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}